@@ -47,11 +47,21 @@ import com.hp.octane.integrations.dto.scm.SCMRepository;
 import com.hp.octane.integrations.dto.scm.SCMType;
 import com.hp.octane.integrations.dto.snapshots.CIBuildResult;
 import com.microfocus.octane.gitlab.app.ApplicationSettings;
+import com.microfocus.octane.gitlab.helpers.BranchesListProvider;
+import com.microfocus.octane.gitlab.helpers.CommitChangesProvider;
 import com.microfocus.octane.gitlab.helpers.GitLabApiWrapper;
+import com.microfocus.octane.gitlab.helpers.JobLocationIndex;
 import com.microfocus.octane.gitlab.helpers.ParsedPath;
+import com.microfocus.octane.gitlab.helpers.ParsedPathResolver;
 import com.microfocus.octane.gitlab.helpers.PathType;
+import com.microfocus.octane.gitlab.helpers.PipelineIndex;
+import com.microfocus.octane.gitlab.helpers.ProjectCatalogue;
+import com.microfocus.octane.gitlab.helpers.ProjectVariables;
 import com.microfocus.octane.gitlab.helpers.PullRequestHelper;
+import com.microfocus.octane.gitlab.helpers.PullRequestPublisher;
+import com.microfocus.octane.gitlab.helpers.SentMergeRequests;
 import com.microfocus.octane.gitlab.helpers.TestResultsHelper;
+import com.microfocus.octane.gitlab.helpers.VariablesCache;
 import com.microfocus.octane.gitlab.helpers.VariablesHelper;
 import com.microfocus.octane.gitlab.model.ConfigStructure;
 import com.microfocus.octane.gitlab.model.MergeRequestEventType;
@@ -65,11 +75,9 @@ import org.gitlab4j.api.GitLabApi;
 import org.gitlab4j.api.GitLabApiException;
 import org.gitlab4j.api.models.Commit;
 import org.gitlab4j.api.models.CompareResults;
-import org.gitlab4j.api.models.Diff;
 import org.gitlab4j.api.models.Job;
 import org.gitlab4j.api.models.MergeRequest;
 import org.gitlab4j.api.models.Project;
-import org.gitlab4j.api.models.Variable;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -81,10 +89,8 @@ import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.Response;
-import javax.xml.transform.TransformerConfigurationException;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigDecimal;
@@ -102,7 +108,9 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 @Component
 @Path("/events")
@@ -113,14 +121,39 @@ public class EventListener {
     private final        GitLabApi                                  gitLabApi;
     private final        ApplicationSettings                        applicationSettings;
     private final        Map<Long, JSONArray>                       pipelineVariables = new ConcurrentHashMap<>();
-    private final        List<Long>                                 sentRoots         = new ArrayList<>();
+    private final        Set<Long>                                  sentRoots         = ConcurrentHashMap.newKeySet();
     private final        Map<Long, List<Pair<CIEvent, JSONObject>>> noRootEvents      = new ConcurrentHashMap<>();
     private final        Map<Long, String>                          lastJobEvents     = new ConcurrentHashMap<>();
+    private final        WebhookEventsQueue                         eventsQueue;
+    private final        JobLocationIndex                           jobLocationIndex;
+    private final        VariablesCache                             variablesCache;
+    private final        ProjectCatalogue                           projectCatalogue;
+    private final        ParsedPathResolver                         parsedPathResolver;
+    private final        BranchesListProvider                       branchesListProvider;
+    private final        PipelineIndex                              pipelineIndex;
+    private final        CommitChangesProvider                      commitChangesProvider;
+    private final        SentMergeRequests                          sentMergeRequests;
+    private final        PullRequestPublisher                       pullRequestPublisher;
 
     @Autowired
-    public EventListener(ApplicationSettings applicationSettings, GitLabApiWrapper gitLabApiWrapper) {
+    public EventListener(ApplicationSettings applicationSettings, GitLabApiWrapper gitLabApiWrapper,
+            WebhookEventsQueue eventsQueue, JobLocationIndex jobLocationIndex, VariablesCache variablesCache,
+            ProjectCatalogue projectCatalogue, ParsedPathResolver parsedPathResolver,
+            BranchesListProvider branchesListProvider, PipelineIndex pipelineIndex,
+            CommitChangesProvider commitChangesProvider, SentMergeRequests sentMergeRequests,
+            PullRequestPublisher pullRequestPublisher) {
         this.applicationSettings = applicationSettings;
         this.gitLabApi = gitLabApiWrapper.getGitLabApi();
+        this.eventsQueue = eventsQueue;
+        this.jobLocationIndex = jobLocationIndex;
+        this.variablesCache = variablesCache;
+        this.projectCatalogue = projectCatalogue;
+        this.parsedPathResolver = parsedPathResolver;
+        this.branchesListProvider = branchesListProvider;
+        this.pipelineIndex = pipelineIndex;
+        this.commitChangesProvider = commitChangesProvider;
+        this.sentMergeRequests = sentMergeRequests;
+        this.pullRequestPublisher = pullRequestPublisher;
     }
 
     @POST
@@ -128,7 +161,12 @@ public class EventListener {
     @Consumes("application/json")
     public Response index(String msg) {
         JSONObject event = new JSONObject(msg);
-        return handleEvent(event);
+        if (!eventsQueue.submit(getPartitionKey(event), () -> handleEvent(event))) {
+            String warning = "The GitLab events queue is full, the event was rejected";
+            log.warn(warning);
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity(warning).build();
+        }
+        return Response.accepted().build();
     }
 
     @GET
@@ -137,17 +175,32 @@ public class EventListener {
         return Response.ok().entity(LISTENING).build();
     }
 
-    private Response handleEvent(JSONObject event) {
+    private void handleEvent(JSONObject event) {
         log.traceEntry();
         try {
+            hintProjectCatalogue(event);
+            if (isPushEvent(event)) {
+                //pushes create and delete branches, and the first one sets the default branch of an empty project
+                parsedPathResolver.invalidate(event.getLong("project_id"),
+                        event.getJSONObject("project").getString("path_with_namespace"));
+                branchesListProvider.invalidate(event.getJSONObject("project").getString("path_with_namespace"));
+            }
+            if (isPipelineEvent(event)) {
+                indexPipeline(event);
+            }
+            if (isTagPushEvent(event)) {
+                branchesListProvider.invalidate(event.getJSONObject("project").getString("path_with_namespace"));
+                return;
+            }
             if (isMergeRequestEvent(event)) {
-                return handleMergeRequestEvent(event);
+                handleMergeRequestEvent(event);
+                return;
             }
 
             List<String> warnings = new ArrayList<>();
             CIEventType eventType = getEventType(event);
             if (eventType == CIEventType.UNDEFINED || eventType == CIEventType.QUEUED) {
-                return Response.ok().build();
+                return;
             }
 
             CIEvent ciEvent = getCIEvent(event);
@@ -168,7 +221,7 @@ public class EventListener {
                 }
 
                 if (ciEvent.getProject().contains(ParsedPath.PIPELINE_JOB_CI_ID_PREFIX)) {
-                    ParsedPath parsedPath = new ParsedPath(ciEvent.getProject(), gitLabApi, PathType.PIPELINE);
+                    ParsedPath parsedPath = new ParsedPath(ciEvent.getProject(), gitLabApi, parsedPathResolver, PathType.PIPELINE);
 
                     String projectDisplayName = parsedPath.getNameWithNameSpaceForDisplayName() != null ?
                                                 parsedPath.getNameWithNameSpaceForDisplayName() :
@@ -198,6 +251,9 @@ public class EventListener {
                 }
 
                 if (isPipelineEvent(event) && eventType == CIEventType.STARTED) {
+                    JSONObject eventProject = event.getJSONObject("project");
+                    variablesCache.invalidateProject(eventProject.getLong("id"), eventProject.getString("path_with_namespace"));
+
                     OctaneSDK.getClients().forEach(client -> client.getEventsService().publishEvent(ciEvent));
 
                     CIEvent scmEvent = getScmEvent(event);
@@ -210,14 +266,12 @@ public class EventListener {
                     sentRoots.add(pipelineId);
                 } else {
                     if (!sentRoots.contains(pipelineId) && isNotLastFinishedJob(pipelineId, event)) {
-                        List<Pair<CIEvent, JSONObject>> pipelineEvents =
-                                noRootEvents.containsKey(pipelineId) ? noRootEvents.get(pipelineId) : new ArrayList<>();
-                        pipelineEvents.add(new ImmutablePair<>(ciEvent, event));
-
-                        noRootEvents.put(pipelineId, pipelineEvents);
+                        noRootEvents.computeIfAbsent(pipelineId, id -> new ArrayList<>())
+                                .add(new ImmutablePair<>(ciEvent, event));
                     } else {
-                        if (noRootEvents.containsKey(pipelineId)) {
-                            noRootEvents.get(pipelineId).forEach(noRootEvent -> {
+                        List<Pair<CIEvent, JSONObject>> pipelineEvents = noRootEvents.remove(pipelineId);
+                        if (pipelineEvents != null) {
+                            pipelineEvents.forEach(noRootEvent -> {
                                 OctaneSDK.getClients()
                                         .forEach(client -> client.getEventsService().publishEvent(noRootEvent.getKey()));
                                 try {
@@ -228,7 +282,6 @@ public class EventListener {
                                     log.warn("An error occurred while handling GitLab event", e);
                                 }
                             });
-                            noRootEvents.remove(pipelineId);
                         }
 
                         OctaneSDK.getClients().forEach(client -> client.getEventsService().publishEvent(ciEvent));
@@ -249,13 +302,51 @@ public class EventListener {
 
             warnings.removeAll(Collections.singletonList(""));
             if (!warnings.isEmpty()) {
-                return Response.ok().entity(warnings).build();
+                log.warn("GitLab event handled with warnings: " + warnings);
             }
         } catch (Exception e) {
             log.warn("An error occurred while handling GitLab event", e);
         }
         log.traceExit();
-        return Response.ok().build();
+    }
+
+    /*
+     * All the events of one pipeline (the pipeline itself and its jobs) share a partition, so they are handled in order
+     * by the same worker. Merge request events are partitioned by project.
+     */
+    private long getPartitionKey(JSONObject event) {
+        try {
+            if (isPipelineEvent(event) || isBuildEvent(event)) {
+                return getPipelineId(event);
+            } else if (isMergeRequestEvent(event)) {
+                return event.getJSONObject("project").getLong("id");
+            }
+            return event.optLong("project_id");
+        } catch (Exception e) {
+            log.debug("Failed to get the partition key of an incoming event, using 0 as default", e);
+            return 0;
+        }
+    }
+
+    /*
+     * Lets the project catalogue reload the projects it does not know yet or whose path has changed.
+     */
+    private void hintProjectCatalogue(JSONObject event) {
+        JSONObject eventProject = event.optJSONObject("project");
+        if (eventProject != null && eventProject.has("id")) {
+            projectCatalogue.hint(eventProject.getLong("id"), eventProject.optString("path_with_namespace", null));
+        } else if (event.has("project_id")) {
+            projectCatalogue.hint(event.getLong("project_id"), null);
+        }
+    }
+
+    private void indexPipeline(JSONObject event) {
+        Map<String, String> variables = new HashMap<>();
+        VariablesHelper.getVariablesListFromPipelineEvent(event).forEach(var ->
+                variables.put(((JSONObject) var).getString("key"), ((JSONObject) var).optString("value")));
+        JSONObject pipeline = event.getJSONObject("object_attributes");
+        pipelineIndex.put(event.getJSONObject("project").getString("path_with_namespace"), variables,
+                pipeline.getLong("id"), pipeline.getString("ref"));
     }
 
     private boolean isNotLastFinishedJob(long pipelineId, JSONObject event) {
@@ -265,7 +356,7 @@ public class EventListener {
     }
 
 
-    private String checkForCoverage(JSONObject event) throws GitLabApiException, IOException, TransformerConfigurationException {
+    private String checkForCoverage(JSONObject event) throws GitLabApiException, IOException {
 
         if (isPipelineEvent(event)) {
             pipelineVariables.remove(getPipelineId(event));
@@ -273,30 +364,52 @@ public class EventListener {
 
         if (!isPipelineEvent(event)) {
             long projectId = event.getLong("project_id");
-            Project project = gitLabApi.getProjectApi().getProject(projectId);
+            Project project = projectCatalogue.getProject(projectId);
             long jobId = getEventTargetObjectId(event);
             Job job = gitLabApi.getJobApi().getJob(projectId, jobId);
+            jobLocationIndex.put(TestResultsHelper.getOctaneJobId(project, job), job.getId().toString(), projectId, jobId);
 
             if (job.getArtifactsFile() != null) {
-
-                sendCodeCoverage(projectId, project, job);
-
                 GherkinTestResultsProvider gherkinTestResultsProvider =
                         GherkinTestResultsProvider.getInstance(applicationSettings);
-                boolean isGherkinTestsExist = gherkinTestResultsProvider.createTestList(project, job,
-                        gitLabApi.getJobApi().downloadArtifactsFile(projectId, job.getId()));
-
-                //looking for Regular tests
-                if (!isGherkinTestsExist) {
-                    JunitTestResultsProvider testResultsProduce = JunitTestResultsProvider.getInstance(applicationSettings);
-                    boolean testResultsExist = testResultsProduce.createTestList(project, job,
-                            gitLabApi.getJobApi().downloadArtifactsFile(projectId, job.getId()));
-
-                    if (!testResultsExist) {
-                        String warning = String.format("No test results found by using the %s pattern",
-                                applicationSettings.getConfig().getGitlabTestResultsFilePattern());
-                        log.warn(warning);
-                        return warning;
+                JunitTestResultsProvider testResultsProduce = JunitTestResultsProvider.getInstance(applicationSettings);
+                String coverageReportFilePattern = getCoverageReportFilePattern(project);
+
+                //the artifacts are downloaded once for all the consumers
+                List<String> filePatterns = new ArrayList<>();
+                if (coverageReportFilePattern != null) {
+                    filePatterns.add(coverageReportFilePattern);
+                }
+                if (TestResultsHelper.isFilePatternExist(gherkinTestResultsProvider.getTestResultsFilePattern())) {
+                    filePatterns.add(gherkinTestResultsProvider.getTestResultsFilePattern());
+                }
+                boolean junitPatternExist = TestResultsHelper.isFilePatternExist(testResultsProduce.getTestResultsFilePattern());
+
+                File artifactsFile = filePatterns.isEmpty() && !junitPatternExist ? null : downloadArtifacts(projectId, job);
+                Map<String, List<File>> artifacts = extractArtifactsToFiles(artifactsFile, job, filePatterns);
+                try {
+                    if (coverageReportFilePattern != null) {
+                        sendCodeCoverage(project, job, artifacts.get(coverageReportFilePattern));
+                    }
+
+                    boolean isGherkinTestsExist = gherkinTestResultsProvider.createTestList(project, job,
+                            artifacts.get(gherkinTestResultsProvider.getTestResultsFilePattern()));
+
+                    //looking for Regular tests
+                    if (!isGherkinTestsExist) {
+                        boolean testResultsExist = artifactsFile != null && testResultsProduce.createTestList(project, job, artifactsFile);
+
+                        if (!testResultsExist) {
+                            String warning = String.format("No test results found by using the %s pattern",
+                                    applicationSettings.getConfig().getGitlabTestResultsFilePattern());
+                            log.warn(warning);
+                            return warning;
+                        }
+                    }
+                } finally {
+                    TestResultsHelper.deleteFiles(artifacts);
+                    if (artifactsFile != null) {
+                        artifactsFile.delete();
                     }
                 }
             }
@@ -304,6 +417,28 @@ public class EventListener {
         return "";
     }
 
+    private File downloadArtifacts(long projectId, Job job) {
+        try {
+            return TestResultsHelper.downloadArtifacts(gitLabApi, projectId, job.getId());
+        } catch (GitLabApiException | IOException e) {
+            log.warn("Failed to download the artifacts of job " + job.getId(), e);
+            return null;
+        }
+    }
+
+    private Map<String, List<File>> extractArtifactsToFiles(File artifactsFile, Job job, List<String> filePatterns) {
+        if (artifactsFile == null || filePatterns.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        try {
+            return TestResultsHelper.extractArtifactsToFiles(artifactsFile, filePatterns);
+        } catch (IOException e) {
+            log.warn("Failed to extract the artifacts of job " + job.getId(), e);
+            return Collections.emptyMap();
+        }
+    }
+
     private long getPipelineId(JSONObject event) {
         if (isBuildEvent(event)) {
             return event.getLong("pipeline_id");
@@ -313,108 +448,104 @@ public class EventListener {
         throw new RuntimeException("The pipeline id can only be extracted from pipeline and build events.");
     }
 
-    private void sendCodeCoverage(long projectId, Project project, Job job) throws GitLabApiException, IOException {
-        Optional<Variable> coverageReportFilePathVar = VariablesHelper.getProjectVariable(gitLabApi, project.getId(),
-                applicationSettings.getConfig().getGeneratedCoverageReportFilePathVariableName());
+    private String getCoverageReportFilePattern(Project project) {
+        Optional<String> coverageReportFilePattern = variablesCache.getProjectVariables(project)
+                .get(applicationSettings.getConfig().getGeneratedCoverageReportFilePathVariableName());
 
-        Map<String, String> projectGroupVariables =
-                VariablesHelper.getProjectGroupVariables(gitLabApi, project, applicationSettings.getConfig());
-
-        if (coverageReportFilePathVar.isEmpty() &&
-            !projectGroupVariables.containsKey(
-                    applicationSettings.getConfig().getGeneratedCoverageReportFilePathVariableName())) {
+        if (coverageReportFilePattern.isEmpty()) {
             log.info("Variable for JaCoCo coverage report path not set. No coverage injection for this pipeline.");
-        } else {
-            String coverageReportFilePattern =
-                    coverageReportFilePathVar.isPresent() ? coverageReportFilePathVar.get().getValue() :
-                    projectGroupVariables.get(applicationSettings.getConfig().getGeneratedCoverageReportFilePathVariableName());
-
-            String octaneJobId = project.getPathWithNamespace().toLowerCase() + "/" + job.getName();
-            String octaneBuildId = job.getId().toString();
-
-            try (InputStream artifactsStream = gitLabApi.getJobApi().downloadArtifactsFile(projectId, job.getId())) {
-                List<File> coverageResultFiles =
-                        TestResultsHelper.extractArtifactsToFiles(artifactsStream, "glob:" + coverageReportFilePattern);
-
-                if (Objects.nonNull(coverageResultFiles) && !coverageResultFiles.isEmpty()) {
-                    coverageResultFiles.forEach(coverageFile -> OctaneSDK.getClients().forEach(client -> {
-                        try {
-                            client.getCoverageService().pushCoverage(octaneJobId, octaneBuildId, CoverageReportType.JACOCOXML,
-                                    new FileInputStream(coverageFile));
-                        } catch (FileNotFoundException e) {
-                            throw new RuntimeException(e);
-                        }
-                    }));
+            return null;
+        }
+
+        return "glob:" + coverageReportFilePattern.get();
+    }
+
+    private void sendCodeCoverage(Project project, Job job, List<File> coverageResultFiles) {
+        String octaneJobId = project.getPathWithNamespace().toLowerCase() + "/" + job.getName();
+        String octaneBuildId = job.getId().toString();
+
+        if (Objects.nonNull(coverageResultFiles) && !coverageResultFiles.isEmpty()) {
+            coverageResultFiles.forEach(coverageFile -> OctaneSDK.getClients().forEach(client -> {
+                try (InputStream coverageStream = new FileInputStream(coverageFile)) {
+                    client.getCoverageService().pushCoverage(octaneJobId, octaneBuildId, CoverageReportType.JACOCOXML,
+                            coverageStream);
+                } catch (IOException e) {
+                    log.error(e.getMessage());
                 }
-            } catch (GitLabApiException | IOException exception) {
-                log.error(exception.getMessage());
-            }
+            }));
         }
     }
 
-    private Response handleMergeRequestEvent(JSONObject event) throws GitLabApiException {
+    private void handleMergeRequestEvent(JSONObject event) throws GitLabApiException {
         log.info("Merge Request event occurred.");
         ConfigStructure config = applicationSettings.getConfig();
 
         if (getMREventType(event).equals(MergeRequestEventType.UNKNOWN)) {
-            String warning = "Unknown event on merge request has taken place!";
-            log.warn(warning);
-            return Response.ok().entity(warning).build();
+            log.warn("Unknown event on merge request has taken place!");
+            return;
         }
 
-        Project project = gitLabApi.getProjectApi().getProject(event.getJSONObject("project").getLong("id"));
-        Map<String, String> projectGroupVariables =
-                VariablesHelper.getProjectGroupVariables(gitLabApi, project, applicationSettings.getConfig());
+        Project project = projectCatalogue.getProject(event.getJSONObject("project").getLong("id"));
+        ProjectVariables projectVariables = variablesCache.getProjectVariables(project);
 
-        Optional<Variable> publishMergeRequests =
-                VariablesHelper.getProjectVariable(gitLabApi, project.getId(), config.getPublishMergeRequestsVariableName());
-        if (((publishMergeRequests.isEmpty() || !Boolean.parseBoolean(publishMergeRequests.get().getValue())) &&
-             (!projectGroupVariables.containsKey(config.getPublishMergeRequestsVariableName()) ||
-              !Boolean.parseBoolean(projectGroupVariables.get(config.getPublishMergeRequestsVariableName()))))) {
-            return Response.ok().build();
+        if (!projectVariables.isTrue(config.getPublishMergeRequestsVariableName())) {
+            return;
         }
 
-        Optional<Variable> destinationWSVar =
-                VariablesHelper.getProjectVariable(gitLabApi, project.getId(), config.getDestinationWorkspaceVariableName());
-        String destinationWS;
-
-        if (destinationWSVar.isEmpty() && !projectGroupVariables.containsKey(config.getDestinationWorkspaceVariableName())) {
-            String err = "Variable for destination workspace has not been set for project with id" + project.getId();
-            log.error(err);
-            return Response.ok().entity(err).build();
-        } else if (destinationWSVar.isPresent()) {
-            destinationWS = destinationWSVar.get().getValue();
-        } else {
-            destinationWS = projectGroupVariables.get(config.getDestinationWorkspaceVariableName());
+        Optional<String> destinationWSVar = projectVariables.get(config.getDestinationWorkspaceVariableName());
+        if (destinationWSVar.isEmpty()) {
+            log.error("Variable for destination workspace has not been set for project with id" + project.getId());
+            return;
         }
+        String destinationWS = destinationWSVar.get();
 
-        Optional<Variable> useSSHFormatVar =
-                VariablesHelper.getProjectVariable(gitLabApi, project.getId(), config.getUseSSHFormatVariableName());
-        boolean useSSHFormat = useSSHFormatVar.isPresent() && Boolean.parseBoolean(useSSHFormatVar.get().getValue()) ||
-                               projectGroupVariables.containsKey(config.getUseSSHFormatVariableName()) &&
-                               Boolean.parseBoolean(projectGroupVariables.get(config.getUseSSHFormatVariableName()));
+        boolean useSSHFormat = projectVariables.isTrue(config.getUseSSHFormatVariableName());
 
         String repoUrl = useSSHFormat ? project.getSshUrlToRepo() : project.getHttpUrlToRepo();
 
         long mergeRequestId = getEventTargetObjectId(event);
         MergeRequest mergeRequest = gitLabApi.getMergeRequestApi().getMergeRequest(project.getId(), mergeRequestId);
 
-        List<Commit> mergeRequestCommits = gitLabApi.getMergeRequestApi().getCommits(project.getId(), mergeRequest.getIid());
-        Map<String, List<Diff>> mrCommitDiffs = new HashMap<>();
+        SentMergeRequests.SentMergeRequest lastSent = sentMergeRequests.get(project.getId(), mergeRequest.getIid());
+        if (lastSent != null && lastSent.isSameAs(mergeRequest, repoUrl, destinationWS)) {
+            log.info("Merge request " + mergeRequest.getIid() + " of project " + project.getId() +
+                     " has no changes to send to Octane.");
+            return;
+        }
 
-        mergeRequestCommits.forEach(commit -> {
-            try {
-                List<Diff> diffs = gitLabApi.getCommitsApi().getDiff(project.getId(), commit.getId());
-                mrCommitDiffs.put(commit.getId(), diffs);
-            } catch (GitLabApiException e) {
-                log.warn(e.getMessage());
-            }
-        });
+        List<SCMCommit> pullRequestCommits;
+        if (lastSent != null && Objects.equals(lastSent.getHeadSha(), mergeRequest.getSha())) {
+            pullRequestCommits = lastSent.getCommits();
+        } else {
+            pullRequestCommits = getMergeRequestCommits(project, mergeRequest, lastSent);
+        }
+
+        pullRequestPublisher.publish(repoUrl,
+                PullRequestHelper.convertMergeRequest(mergeRequest, pullRequestCommits, repoUrl), destinationWS)
+                .thenAccept(sent -> {
+                    if (sent) {
+                        sentMergeRequests.put(project.getId(), mergeRequest, repoUrl, destinationWS, pullRequestCommits);
+                    }
+                });
+    }
 
-        PullRequestHelper.convertAndSendMergeRequestToOctane(mergeRequest, mergeRequestCommits, mrCommitDiffs, repoUrl,
-                destinationWS);
+    /*
+     * Only the changes of the commits which were not sent with the merge request yet are read.
+     */
+    private List<SCMCommit> getMergeRequestCommits(Project project, MergeRequest mergeRequest,
+            SentMergeRequests.SentMergeRequest lastSent) throws GitLabApiException {
+        List<Commit> mergeRequestCommits = gitLabApi.getMergeRequestApi().getCommits(project.getId(), mergeRequest.getIid());
+
+        Map<String, List<SCMChange>> sentCommitChanges = new HashMap<>();
+        if (lastSent != null) {
+            lastSent.getCommits().forEach(commit -> sentCommitChanges.put(commit.getRevId(), commit.getChanges()));
+        }
+        Map<String, List<SCMChange>> mrCommitChanges = commitChangesProvider.getChangesBySha(project.getId(),
+                mergeRequestCommits.stream().map(Commit::getId).filter(sha -> !sentCommitChanges.containsKey(sha))
+                        .collect(Collectors.toList()));
+        mrCommitChanges.putAll(sentCommitChanges);
 
-        return Response.ok().build();
+        return PullRequestHelper.convertMergeRequestCommits(mergeRequestCommits, mrCommitChanges);
     }
 
     private CIEvent getScmEvent(JSONObject event) {
@@ -634,7 +765,10 @@ public class EventListener {
             String beforeSha = event.getJSONObject("object_attributes").getString("before_sha");
             CompareResults results = gitLabApi.getRepositoryApi().compare(projectId, beforeSha, sha);
             List<SCMCommit> commits = new ArrayList<>();
-            results.getCommits().forEach(c -> {
+            List<List<SCMChange>> commitsChanges = commitChangesProvider.getChanges(projectId,
+                    results.getCommits().stream().map(Commit::getId).collect(Collectors.toList()));
+            for (int i = 0; i < results.getCommits().size(); i++) {
+                Commit c = results.getCommits().get(i);
                 SCMCommit commit = dtoFactory.newDTO(SCMCommit.class);
                 commit.setTime(c.getTimestamp() != null ? c.getTimestamp().getTime() : new Date().getTime());
                 commit.setUser(c.getCommitterName());
@@ -642,21 +776,11 @@ public class EventListener {
                 commit.setRevId(c.getId());
                 commit.setParentRevId(sha);
                 commit.setComment(c.getMessage());
-                try {
-                    List<Diff> diffs = gitLabApi.getCommitsApi().getDiff(projectId, c.getId());
-                    List<SCMChange> changes = new ArrayList<>();
-                    diffs.forEach(d -> {
-                        SCMChange change = dtoFactory.newDTO(SCMChange.class);
-                        change.setFile(d.getNewPath());
-                        change.setType(d.getNewFile() ? "add" : d.getDeletedFile() ? "delete" : "edit");
-                        changes.add(change);
-                    });
-                    commit.setChanges(changes);
-                } catch (GitLabApiException e) {
-                    log.warn("Failed to add a commit to the SCM data", e);
+                if (commitsChanges.get(i) != null) {
+                    commit.setChanges(commitsChanges.get(i));
                 }
                 commits.add(commit);
-            });
+            }
 
             SCMRepository repo = dtoFactory.newDTO(SCMRepository.class);
             repo.setType(SCMType.GIT);
@@ -769,6 +893,14 @@ public class EventListener {
         return event.getString("object_kind").equals("merge_request");
     }
 
+    private boolean isPushEvent(JSONObject event) {
+        return event.getString("object_kind").equals("push");
+    }
+
+    private boolean isTagPushEvent(JSONObject event) {
+        return event.getString("object_kind").equals("tag_push");
+    }
+
     private boolean isDeleteBranchEvent(JSONObject event) {
         return (event.getString("object_kind").equals("push") &&
                 event.getString("after").contains("00000000000000000") &&
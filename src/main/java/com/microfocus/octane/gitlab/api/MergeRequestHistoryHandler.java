@@ -29,63 +29,146 @@
 
 package com.microfocus.octane.gitlab.api;
 
+import com.hp.octane.integrations.dto.scm.SCMChange;
+import com.hp.octane.integrations.dto.scm.SCMCommit;
 import com.microfocus.octane.gitlab.app.ApplicationSettings;
+import com.microfocus.octane.gitlab.helpers.CommitChangesProvider;
 import com.microfocus.octane.gitlab.helpers.GitLabApiWrapper;
+import com.microfocus.octane.gitlab.helpers.ProjectCatalogue;
+import com.microfocus.octane.gitlab.helpers.ProjectVariables;
 import com.microfocus.octane.gitlab.helpers.PullRequestHelper;
-import com.microfocus.octane.gitlab.helpers.VariablesHelper;
+import com.microfocus.octane.gitlab.helpers.PullRequestPublisher;
+import com.microfocus.octane.gitlab.helpers.SentMergeRequests;
+import com.microfocus.octane.gitlab.helpers.VariablesCache;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.gitlab4j.api.Constants;
 import org.gitlab4j.api.GitLabApi;
 import org.gitlab4j.api.GitLabApiException;
-import org.gitlab4j.api.models.AccessLevel;
+import org.gitlab4j.api.Pager;
 import org.gitlab4j.api.models.Commit;
-import org.gitlab4j.api.models.Diff;
 import org.gitlab4j.api.models.MergeRequest;
+import org.gitlab4j.api.models.MergeRequestFilter;
 import org.gitlab4j.api.models.Project;
-import org.gitlab4j.api.models.ProjectFilter;
-import org.gitlab4j.api.models.Variable;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.DependsOn;
 import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardWatchEventKinds;
 import java.nio.file.WatchEvent;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
+/*
+ * Sends the merge request history of the projects to ALM Octane. The history of several projects is sent in parallel,
+ * and the merge requests of a project are converted by at most gitlab.mergeRequests.backfillWorkersPerProject workers.
+ * The merge requests are sent oldest first, page by page, and the iid of the last merge request of a page is stored as
+ * the checkpoint of the project once the whole page reached ALM Octane, so an interrupted backfill resumes from there.
+ */
 @Component
 @DependsOn({"gitLabApiWrapper", "applicationSettings", "taskExecutor"})
 public class MergeRequestHistoryHandler {
 
     private static final Logger log = LogManager.getLogger(MergeRequestHistoryHandler.class);
+    private static final int MERGE_REQUESTS_PAGE_SIZE = 100;
+    private static final String CHECKPOINTS_FOLDER = "checkpoints";
+    private static final String WATERMARKS_FOLDER = "watermarks";
+    /* the watermark of a backfill (or the history file of an older version) is in the time of the service, whose clock may
+       be ahead of the GitLab server */
+    private static final Duration WATERMARK_OVERLAP = Duration.ofMinutes(10);
+    private static final Duration BACKFILL_RETRY_DELAY = Duration.ofMinutes(10);
+    private static final Duration BACKFILL_MAX_RETRY_DELAY = Duration.ofDays(1);
     private final GitLabApi gitLabApi;
     private final ApplicationSettings applicationSettings;
     private final WatchService watchService;
     private final Path watchPath;
+    private final Path checkpointsPath;
+    private final Path watermarksPath;
     private final TaskExecutor taskExecutor;
+    private final VariablesCache variablesCache;
+    private final ProjectCatalogue projectCatalogue;
+    private final CommitChangesProvider commitChangesProvider;
+    private final PullRequestPublisher pullRequestPublisher;
+    private final SentMergeRequests sentMergeRequests;
+    private final int workersPerProject;
+    private final ExecutorService projectExecutor;
+    private final ExecutorService mergeRequestExecutor;
+    private final ScheduledExecutorService syncScheduler = Executors.newSingleThreadScheduledExecutor();
+    private final Map<Long, BackfillProgress> backfills = new ConcurrentHashMap<>();
+
+    private enum BackfillStatus {QUEUED, RUNNING, DONE, FAILED}
+
+    private static class Destination {
+        private final String repoUrl;
+        private final String workspace;
+
+        private Destination(String repoUrl, String workspace) {
+            this.repoUrl = repoUrl;
+            this.workspace = workspace;
+        }
+    }
+
+    private static class BackfillProgress {
+        private volatile BackfillStatus status = BackfillStatus.QUEUED;
+        private volatile long total = -1;
+        private volatile long checkpoint;
+        private final AtomicLong sent = new AtomicLong();
+        private volatile int failures;
+        private volatile long retryAt;
+    }
 
     @Autowired
     public MergeRequestHistoryHandler(GitLabApiWrapper gitLabApiWrapper, ApplicationSettings applicationSettings,
-                                      @Qualifier("taskExecutor") TaskExecutor taskExecutor) {
+                                      @Qualifier("taskExecutor") TaskExecutor taskExecutor, VariablesCache variablesCache,
+                                      ProjectCatalogue projectCatalogue, CommitChangesProvider commitChangesProvider,
+                                      PullRequestPublisher pullRequestPublisher, SentMergeRequests sentMergeRequests) {
 
         this.gitLabApi = gitLabApiWrapper.getGitLabApi();
         this.applicationSettings = applicationSettings;
         this.taskExecutor = taskExecutor;
+        this.variablesCache = variablesCache;
+        this.projectCatalogue = projectCatalogue;
+        this.commitChangesProvider = commitChangesProvider;
+        this.pullRequestPublisher = pullRequestPublisher;
+        this.sentMergeRequests = sentMergeRequests;
+        this.workersPerProject = applicationSettings.getConfig().getMergeRequestsBackfillWorkersPerProject();
+        int backfillParallelism = applicationSettings.getConfig().getMergeRequestsBackfillParallelism();
+        this.projectExecutor = Executors.newFixedThreadPool(backfillParallelism);
+        this.mergeRequestExecutor = Executors.newFixedThreadPool(backfillParallelism * workersPerProject);
         this.watchService = createWatchService();
         this.watchPath = Paths.get(applicationSettings.getConfig().getMergeRequestHistoryFolderPath());
+        this.checkpointsPath = watchPath.resolve(CHECKPOINTS_FOLDER);
+        this.watermarksPath = watchPath.resolve(WATERMARKS_FOLDER);
         registerWatchPath();
     }
 
@@ -103,43 +186,24 @@ public class MergeRequestHistoryHandler {
             if (!Files.exists(this.watchPath)) {
                 Files.createDirectory(this.watchPath);
             }
+            Files.createDirectories(this.checkpointsPath);
+            Files.createDirectories(this.watermarksPath);
             this.watchPath.register(this.watchService, StandardWatchEventKinds.ENTRY_DELETE);
         } catch (IOException e) {
-            e.printStackTrace();
+            log.error("Failed to prepare the merge request history folder " + watchPath + ": " + e.getMessage(), e);
         }
     }
 
+    /*
+     * Queues the backfill of every project whose history has not been sent yet, and returns without waiting for it.
+     */
     public void executeFirstScan() {
         try {
-            ProjectFilter filter = new ProjectFilter().withMembership(true).withMinAccessLevel(AccessLevel.MAINTAINER);
-            List<Project> gitLabProjects = gitLabApi.getProjectApi().getProjects(filter).stream()
-                    .filter(project -> {
-                        Map<String, String> projectGroupVariables =
-                                VariablesHelper.getProjectGroupVariables(gitLabApi, project, applicationSettings.getConfig());
-
-                        Optional<Variable> shouldPublishToOctane =
-                                VariablesHelper.getProjectVariable(gitLabApi, project.getId(),
-                                        applicationSettings.getConfig().getPublishMergeRequestsVariableName());
-
-                        return (shouldPublishToOctane.isPresent() &&
-                                Boolean.parseBoolean(shouldPublishToOctane.get().getValue())) ||
-                                (projectGroupVariables.containsKey(
-                                        applicationSettings.getConfig().getPublishMergeRequestsVariableName()) &&
-                                        Boolean.parseBoolean(projectGroupVariables.get(applicationSettings.getConfig()
-                                                .getPublishMergeRequestsVariableName())));
-                    }).collect(Collectors.toList());
-
-            gitLabProjects.forEach(project -> {
-                try {
-                    Path pathToFile = Paths.get(watchPath.toString() + "/" + project.getId());
-                    if (!Files.exists(pathToFile)) {
-                        sendMergeRequestsToOctane(project);
-                        Files.createFile(pathToFile);
-                    }
-                } catch (GitLabApiException | IOException e) {
-                    log.warn(e.getMessage(), e);
-                }
-            });
+            projectCatalogue.getProjects().stream()
+                    .filter(project -> variablesCache.getProjectVariables(project)
+                            .isTrue(applicationSettings.getConfig().getPublishMergeRequestsVariableName()))
+                    .filter(project -> !Files.exists(watchPath.resolve(String.valueOf(project.getId()))))
+                    .forEach(this::backfill);
 
         } catch (GitLabApiException e) {
             log.error(e.getMessage(), e);
@@ -155,81 +219,397 @@ public class MergeRequestHistoryHandler {
                     for (WatchEvent<?> event : key.pollEvents()) {
                         log.info("Disk change event occurred: " + event.context().toString() + " was deleted.");
                         String projectId = event.context().toString();
+                        if (!projectId.matches("\\d+")) {
+                            continue;
+                        }
                         try {
-                            Project project = gitLabApi.getProjectApi().getProject(projectId);
-                            sendMergeRequestsToOctane(project);
-                            Path pathToFile = Paths.get(watchPath.toString() + "/" + project.getId());
-                            Files.createFile(pathToFile);
-                        } catch (GitLabApiException | IOException e) {
+                            backfill(projectCatalogue.getProject(projectId));
+                        } catch (GitLabApiException e) {
                             log.error(e.getMessage(), e);
                         }
                     }
                     key.reset();
                 }
             } catch (InterruptedException e) {
-                e.printStackTrace();
+                log.info("Stopped listening for disk changes on " + watchPath);
+                Thread.currentThread().interrupt();
             }
         });
     }
 
-    private void sendMergeRequestsToOctane(Project project) throws GitLabApiException {
-        log.info("Sending merge request history for project with id " + project.getId() + " to Octane.");
-        List<MergeRequest> mergeRequests = gitLabApi.getMergeRequestApi().getMergeRequests(project.getId());
-        Map<String, String> projectGroupVariables = VariablesHelper.getProjectGroupVariables(gitLabApi, project, applicationSettings.getConfig());
+    /*
+     * Every gitlab.mergeRequests.syncIntervalMinutes, sends the merge requests updated since the previous sync, so that
+     * the merge requests whose webhook events were missed still reach ALM Octane.
+     */
+    public void startSync() {
+        long syncIntervalMinutes = applicationSettings.getConfig().getMergeRequestsSyncIntervalMinutes();
+        if (syncIntervalMinutes == 0) {
+            return;
+        }
+        syncScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                syncMergeRequests();
+            } catch (RuntimeException e) {
+                log.warn("Merge request sync failed: " + e.getMessage(), e);
+            }
+        }, syncIntervalMinutes, syncIntervalMinutes, TimeUnit.MINUTES);
+    }
 
-        Optional<Variable> destinationWSVar =
-                VariablesHelper.getProjectVariable(gitLabApi, project.getId(),
-                        applicationSettings.getConfig().getDestinationWorkspaceVariableName());
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        Map<String, Object> projects = new HashMap<>();
+        Map<BackfillStatus, Long> projectsByStatus = new HashMap<>();
+        long sent = 0;
+        for (Map.Entry<Long, BackfillProgress> entry : backfills.entrySet()) {
+            BackfillProgress progress = entry.getValue();
+            projectsByStatus.merge(progress.status, 1L, Long::sum);
+            sent += progress.sent.get();
+            if (progress.status != BackfillStatus.DONE) {
+                Map<String, Object> projectMetrics = new HashMap<>();
+                projectMetrics.put("status", progress.status.name());
+                projectMetrics.put("sent", progress.sent.get());
+                projectMetrics.put("total", progress.total);
+                projectMetrics.put("checkpoint", progress.checkpoint);
+                projects.put(String.valueOf(entry.getKey()), projectMetrics);
+            }
+        }
+        for (BackfillStatus status : BackfillStatus.values()) {
+            metrics.put("projects" + status.name().charAt(0) + status.name().substring(1).toLowerCase(),
+                    projectsByStatus.getOrDefault(status, 0L));
+        }
+        metrics.put("mergeRequestsSent", sent);
+        metrics.put("projects", projects);
+        return metrics;
+    }
 
-        if (destinationWSVar.isEmpty() && !projectGroupVariables.containsKey(
-                applicationSettings.getConfig().getDestinationWorkspaceVariableName())) {
-            String err = "Variable for destination workspace has not been set for project with id" +
-                    project.getId();
-            log.error(err);
-        } else {
-            String destinationWS;
+    @PreDestroy
+    private void stop() {
+        syncScheduler.shutdownNow();
+        projectExecutor.shutdownNow();
+        mergeRequestExecutor.shutdownNow();
+    }
 
-            if (destinationWSVar.isPresent()) {
-                destinationWS = destinationWSVar.get().getValue();
-            } else {
-                destinationWS = projectGroupVariables.get(
-                        applicationSettings.getConfig().getDestinationWorkspaceVariableName());
+    private void backfill(Project project) {
+        BackfillProgress progress = new BackfillProgress();
+        BackfillProgress previous = backfills.compute(project.getId(), (id, current) -> {
+            if (isRunning(current)) {
+                return current;
             }
+            progress.failures = current != null ? current.failures : 0;
+            return progress;
+        });
+        if (previous != progress) {
+            log.info("Merge request history for project with id " + project.getId() + " is already being sent.");
+            return;
+        }
+        projectExecutor.execute(() -> {
+            progress.status = BackfillStatus.RUNNING;
+            Instant started = Instant.now();
+            try {
+                sendMergeRequestsToOctane(project, progress);
+                writeStateFile(getWatermarkFile(project.getId()), started.toEpochMilli());
+                Path pathToFile = watchPath.resolve(String.valueOf(project.getId()));
+                if (!Files.exists(pathToFile)) {
+                    Files.createFile(pathToFile);
+                }
+                Files.deleteIfExists(getCheckpointFile(project.getId()));
+                progress.status = BackfillStatus.DONE;
+            } catch (GitLabApiException | IOException | RuntimeException e) {
+                scheduleRetry(progress);
+                progress.status = BackfillStatus.FAILED;
+                log.warn("Sending merge request history for project with id " + project.getId() +
+                         " stopped at merge request " + progress.checkpoint + ", retrying after " +
+                         Instant.ofEpochMilli(progress.retryAt) + ": " + e.getMessage(), e);
+            } catch (InterruptedException e) {
+                progress.status = BackfillStatus.FAILED;
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    /*
+     * The delay doubles with every failure in a row, up to a day.
+     */
+    private static void scheduleRetry(BackfillProgress progress) {
+        progress.failures++;
+        Duration delay = BACKFILL_RETRY_DELAY.multipliedBy(1L << Math.min(progress.failures - 1, 16));
+        progress.retryAt = System.currentTimeMillis() +
+                           (delay.compareTo(BACKFILL_MAX_RETRY_DELAY) < 0 ? delay : BACKFILL_MAX_RETRY_DELAY).toMillis();
+    }
 
-            Optional<Variable> useSSHFormatVar =
-                    VariablesHelper.getProjectVariable(gitLabApi, project.getId(),
-                            applicationSettings.getConfig().getUseSSHFormatVariableName());
+    /*
+     * The history of a project which was not sent yet is sent by the sync: either its backfill failed, or the project
+     * was enabled after the service started.
+     */
+    private static boolean isBackfillDue(BackfillProgress progress) {
+        return progress == null ||
+               (progress.status == BackfillStatus.FAILED && System.currentTimeMillis() >= progress.retryAt);
+    }
+
+    private static boolean isRunning(BackfillProgress progress) {
+        return progress != null &&
+               (progress.status == BackfillStatus.QUEUED || progress.status == BackfillStatus.RUNNING);
+    }
 
-            boolean useSSHFormat =
-                    useSSHFormatVar.isPresent() && Boolean.parseBoolean(useSSHFormatVar.get().getValue()) ||
-                            projectGroupVariables.containsKey(
-                                    applicationSettings.getConfig().getUseSSHFormatVariableName()) &&
-                                    Boolean.parseBoolean(projectGroupVariables.get(
-                                            applicationSettings.getConfig().getUseSSHFormatVariableName()));
+    private void sendMergeRequestsToOctane(Project project, BackfillProgress progress)
+            throws GitLabApiException, IOException, InterruptedException {
+        Destination destination = getDestination(project);
+        if (destination == null) {
+            return;
+        }
 
-            String repoUrl = useSSHFormat ? project.getSshUrlToRepo() : project.getHttpUrlToRepo();
+        Long checkpoint = readStateFile(getCheckpointFile(project.getId()));
+        progress.checkpoint = checkpoint != null ? checkpoint : 0;
+        log.info("Sending merge request history for project with id " + project.getId() + " to Octane" +
+                 (progress.checkpoint > 0 ? ", resuming after merge request " + progress.checkpoint : "") + ".");
+
+        /* the merge requests are listed by creation, so that they come in the order of their iids */
+        MergeRequestFilter filter = new MergeRequestFilter()
+                .withProjectId(project.getId())
+                .withOrderBy(Constants.MergeRequestOrderBy.CREATED_AT)
+                .withSort(Constants.SortOrder.ASC);
+        Pager<MergeRequest> pager = gitLabApi.getMergeRequestApi().getMergeRequests(filter, MERGE_REQUESTS_PAGE_SIZE);
+        progress.total = pager.getTotalItems();
+
+        Semaphore workers = new Semaphore(workersPerProject);
+        while (pager.hasNext()) {
+            List<MergeRequest> mergeRequests = pager.next().stream()
+                    .filter(mergeRequest -> mergeRequest.getIid() > progress.checkpoint)
+                    .collect(Collectors.toList());
+            if (mergeRequests.isEmpty()) {
+                continue;
+            }
 
-            mergeRequests.forEach(mergeRequest -> {
-                List<Commit> mergeRequestCommits = new ArrayList<>();
-                Map<String, List<Diff>> mrCommitDiffs = new HashMap<>();
+            sendMergeRequests(project, mergeRequests, destination, workers);
+            progress.sent.addAndGet(mergeRequests.size());
+            progress.checkpoint = mergeRequests.get(mergeRequests.size() - 1).getIid();
+            writeStateFile(getCheckpointFile(project.getId()), progress.checkpoint);
+        }
+    }
+
+    /*
+     * Sends the merge requests of the projects updated since their watermark, the time of the previous sync or of the
+     * end of their history backfill. A merge request already sent by a webhook event in the same state is skipped.
+     * The projects whose history was not sent yet are backfilled instead, resuming from their checkpoint.
+     */
+    private void syncMergeRequests() {
+        List<Project> projects = new ArrayList<>();
+        try {
+            for (Project project : projectCatalogue.getProjects()) {
+                BackfillProgress progress = backfills.get(project.getId());
+                if (isRunning(progress) || !variablesCache.getProjectVariables(project)
+                        .isTrue(applicationSettings.getConfig().getPublishMergeRequestsVariableName())) {
+                    continue;
+                }
+                if (Files.exists(watchPath.resolve(String.valueOf(project.getId())))) {
+                    projects.add(project);
+                } else if (isBackfillDue(progress)) {
+                    backfill(project);
+                }
+            }
+        } catch (GitLabApiException | RuntimeException e) {
+            log.warn("Failed to list the projects for the merge request sync: " + e.getMessage(), e);
+            return;
+        }
+
+        List<CompletableFuture<Void>> syncs = new ArrayList<>();
+        for (Project project : projects) {
+            syncs.add(CompletableFuture.runAsync(() -> {
                 try {
-                    mergeRequestCommits =
-                            gitLabApi.getMergeRequestApi().getCommits(project.getId(), mergeRequest.getIid());
-                    mergeRequestCommits.forEach(commit -> {
-                        try {
-                            List<Diff> diffs = gitLabApi.getCommitsApi().getDiff(project.getId(), commit.getId());
-                            mrCommitDiffs.put(commit.getId(), diffs);
-                        } catch (GitLabApiException e) {
-                            log.warn(e.getMessage());
-                        }
-                    });
-                } catch (GitLabApiException e) {
-                    log.warn(e.getMessage(), e);
+                    syncMergeRequests(project);
+                } catch (GitLabApiException | IOException | RuntimeException e) {
+                    log.warn("Failed to sync the merge requests of project with id " + project.getId() + ": " +
+                             e.getMessage(), e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
                 }
+            }, projectExecutor));
+        }
+        CompletableFuture.allOf(syncs.toArray(new CompletableFuture[0])).join();
+    }
+
+    private void syncMergeRequests(Project project) throws GitLabApiException, IOException, InterruptedException {
+        Destination destination = getDestination(project);
+        if (destination == null) {
+            return;
+        }
+
+        Instant watermark = getWatermark(project.getId());
+        Semaphore workers = new Semaphore(workersPerProject);
+        int sent = 0;
+        /* keyset paging: an offset page would shift when a merge request is updated during the scan, so the scan re-queries
+           from the last update seen (updated_after is inclusive), and only pages by offset within a run of equal updates */
+        Instant cursor = watermark.minus(WATERMARK_OVERLAP);
+        Instant lastUpdate = null;
+        Set<String> seen = new HashSet<>();
+        int pageNumber = 1;
+        while (true) {
+            MergeRequestFilter filter = new MergeRequestFilter()
+                    .withProjectId(project.getId())
+                    .withUpdatedAfter(Date.from(cursor))
+                    .withOrderBy(Constants.MergeRequestOrderBy.UPDATED_AT)
+                    .withSort(Constants.SortOrder.ASC);
+            List<MergeRequest> page = gitLabApi.getMergeRequestApi()
+                    .getMergeRequests(filter, pageNumber, MERGE_REQUESTS_PAGE_SIZE);
+            List<MergeRequest> unseen = page.stream()
+                    .filter(mergeRequest -> seen.add(mergeRequest.getIid() + "@" + mergeRequest.getUpdatedAt()))
+                    .collect(Collectors.toList());
+            if (unseen.isEmpty() && page.size() < MERGE_REQUESTS_PAGE_SIZE) {
+                break;
+            }
+
+            Instant pageUpdate = null;
+            for (MergeRequest mergeRequest : page) {
+                if (mergeRequest.getUpdatedAt() != null &&
+                    (pageUpdate == null || mergeRequest.getUpdatedAt().toInstant().isAfter(pageUpdate))) {
+                    pageUpdate = mergeRequest.getUpdatedAt().toInstant();
+                }
+            }
+            List<MergeRequest> mergeRequests = unseen.stream()
+                    .filter(mergeRequest -> {
+                        SentMergeRequests.SentMergeRequest lastSent =
+                                sentMergeRequests.get(project.getId(), mergeRequest.getIid());
+                        return lastSent == null ||
+                               !lastSent.isSameAs(mergeRequest, destination.repoUrl, destination.workspace);
+                    })
+                    .collect(Collectors.toList());
+            sendMergeRequests(project, mergeRequests, destination, workers);
+            sent += mergeRequests.size();
+
+            if (pageUpdate != null && pageUpdate.isAfter(cursor)) {
+                cursor = pageUpdate;
+                lastUpdate = pageUpdate;
+                pageNumber = 1;
+            } else {
+                /* a full page of equal updates (or without updates) cannot move the cursor */
+                pageNumber++;
+            }
+        }
+        /* the new watermark is the last update seen, in the time of the GitLab server, not the time of the service, and is
+           only written once the scan reached the end */
+        if (lastUpdate != null && lastUpdate.isAfter(watermark)) {
+            writeStateFile(getWatermarkFile(project.getId()), lastUpdate.toEpochMilli());
+        }
+
+        if (sent > 0) {
+            log.info("Sent " + sent + " merge requests of project with id " + project.getId() + " updated since " +
+                     watermark + " to Octane.");
+        }
+    }
+
+    /*
+     * Returns once all the merge requests reached ALM Octane, and throws if any of them did not.
+     */
+    private void sendMergeRequests(Project project, List<MergeRequest> mergeRequests, Destination destination,
+                                   Semaphore workers) throws InterruptedException {
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        for (MergeRequest mergeRequest : mergeRequests) {
+            workers.acquire();
+            CompletableFuture<List<SCMCommit>> commits;
+            try {
+                commits = CompletableFuture.supplyAsync(() -> getMergeRequestCommits(project, mergeRequest),
+                        mergeRequestExecutor);
+            } catch (RuntimeException e) {
+                workers.release();
+                throw e;
+            }
+            commits.whenComplete((result, e) -> workers.release());
+            results.add(commits.thenCompose(pullRequestCommits -> pullRequestPublisher.publish(destination.repoUrl,
+                    PullRequestHelper.convertMergeRequest(mergeRequest, pullRequestCommits, destination.repoUrl),
+                    destination.workspace).thenApply(sent -> {
+                        if (sent) {
+                            sentMergeRequests.put(project.getId(), mergeRequest, destination.repoUrl,
+                                    destination.workspace, pullRequestCommits);
+                        }
+                        return sent;
+                    })));
+        }
+
+        for (CompletableFuture<Boolean> result : results) {
+            if (!result.join()) {
+                throw new RuntimeException("Failed to send merge requests to Octane");
+            }
+        }
+    }
+
+    /*
+     * Throws when the commits cannot be read, so that the merge request is not sent without them, and is sent again by
+     * the next sync (or resumed backfill) instead.
+     */
+    private List<SCMCommit> getMergeRequestCommits(Project project, MergeRequest mergeRequest) {
+        List<Commit> mergeRequestCommits;
+        try {
+            mergeRequestCommits =
+                    gitLabApi.getMergeRequestApi().getCommits(project.getId(), mergeRequest.getIid());
+        } catch (GitLabApiException e) {
+            throw new CompletionException("Failed to get the commits of merge request " + mergeRequest.getIid() +
+                                          " of project with id " + project.getId(), e);
+        }
+        Map<String, List<SCMChange>> mrCommitChanges = commitChangesProvider.getChangesBySha(project.getId(),
+                mergeRequestCommits.stream().map(Commit::getId).collect(Collectors.toList()));
+
+        return PullRequestHelper.convertMergeRequestCommits(mergeRequestCommits, mrCommitChanges);
+    }
 
-                PullRequestHelper.convertAndSendMergeRequestToOctane(mergeRequest, mergeRequestCommits, mrCommitDiffs,
-                        repoUrl, destinationWS);
-            });
+    /*
+     * Returns null when the destination workspace of the project is not set.
+     */
+    private Destination getDestination(Project project) {
+        ProjectVariables projectVariables = variablesCache.getProjectVariables(project);
+
+        Optional<String> destinationWSVar =
+                projectVariables.get(applicationSettings.getConfig().getDestinationWorkspaceVariableName());
+
+        if (destinationWSVar.isEmpty()) {
+            String err = "Variable for destination workspace has not been set for project with id" +
+                    project.getId();
+            log.error(err);
+            return null;
         }
+
+        boolean useSSHFormat =
+                projectVariables.isTrue(applicationSettings.getConfig().getUseSSHFormatVariableName());
+
+        String repoUrl = useSSHFormat ? project.getSshUrlToRepo() : project.getHttpUrlToRepo();
+        return new Destination(repoUrl, destinationWSVar.get());
+    }
+
+    /*
+     * Projects whose history was sent before the watermarks were kept use the time their history file was created.
+     */
+    private Instant getWatermark(long projectId) throws IOException {
+        Long watermark = readStateFile(getWatermarkFile(projectId));
+        return watermark != null ? Instant.ofEpochMilli(watermark)
+                : Files.getLastModifiedTime(watchPath.resolve(String.valueOf(projectId))).toInstant();
+    }
+
+    private Path getCheckpointFile(long projectId) {
+        return checkpointsPath.resolve(String.valueOf(projectId));
+    }
+
+    private Path getWatermarkFile(long projectId) {
+        return watermarksPath.resolve(String.valueOf(projectId));
+    }
+
+    /*
+     * Returns null when the file does not exist or cannot be read.
+     */
+    private Long readStateFile(Path stateFile) {
+        if (!Files.exists(stateFile)) {
+            return null;
+        }
+        try {
+            return Long.parseLong(new String(Files.readAllBytes(stateFile), StandardCharsets.UTF_8).trim());
+        } catch (IOException | NumberFormatException e) {
+            log.warn("Failed to read " + stateFile + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeStateFile(Path stateFile, long value) throws IOException {
+        Files.createDirectories(stateFile.getParent());
+        Path tempFile = Files.createTempFile(stateFile.getParent(), stateFile.getFileName().toString(), ".tmp");
+        Files.write(tempFile, String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+        Files.move(tempFile, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
     }
-}
\ No newline at end of file
+}
@@ -59,12 +59,24 @@ public class StatusRestResource {
 
     private final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
     private static GitLabApi gitLabApi;
+    private static WebhookEventsQueue eventsQueue;
+    private static MergeRequestHistoryHandler mergeRequestHistoryHandler;
 
     @Autowired
     public void setGitLabApi(GitLabApiWrapper gitLabApiWrapper) {
         gitLabApi = gitLabApiWrapper.getGitLabApi();
     }
 
+    @Autowired
+    public void setEventsQueue(WebhookEventsQueue webhookEventsQueue) {
+        eventsQueue = webhookEventsQueue;
+    }
+
+    @Autowired
+    public void setMergeRequestHistoryHandler(MergeRequestHistoryHandler historyHandler) {
+        mergeRequestHistoryHandler = historyHandler;
+    }
+
 
     @GET
     @Produces({MediaType.APPLICATION_JSON})
@@ -112,6 +124,8 @@ public class StatusRestResource {
         //fill results
         result.put("server", serverInfo);
         result.put("metrics", allMetrics);
+        result.put("eventsQueue", eventsQueue.getMetrics());
+        result.put("mergeRequestHistory", mergeRequestHistoryHandler.getMetrics());
 
         return result;
     }
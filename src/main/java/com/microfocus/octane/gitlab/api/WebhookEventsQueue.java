@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Copyright 2017-2023 Open Text.
+ *
+ * The only warranties for products and services of Open Text and
+ * its affiliates and licensors (“Open Text”) are as may be set forth
+ * in the express warranty statements accompanying such products and services.
+ * Nothing herein should be construed as constituting an additional warranty.
+ * Open Text shall not be liable for technical or editorial errors or
+ * omissions contained herein. The information contained herein is subject
+ * to change without notice.
+ *
+ * Except as specifically indicated otherwise, this document contains
+ * confidential information and a valid license is required for possession,
+ * use or copying. If this work is provided to the U.S. Government,
+ * consistent with FAR 12.211 and 12.212, Commercial Computer Software,
+ * Computer Software Documentation, and Technical Data for Commercial Items are
+ * licensed to the U.S. Government under vendor's standard commercial license.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.microfocus.octane.gitlab.api;
+
+import com.microfocus.octane.gitlab.app.ApplicationSettings;
+import com.microfocus.octane.gitlab.model.ConfigStructure;
+import com.microfocus.octane.gitlab.model.QueueOverflowPolicy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Bounded in-memory queue for the GitLab webhook deliveries.
+ * The events are handled by a fixed pool of workers, so the webhook request itself returns as soon as the event is queued
+ * and GitLab does not time out while we talk to GitLab and Octane.
+ * The queue is partitioned: every worker owns a lane, and all the events of one partition (e.g. one pipeline) go to the
+ * same lane, so they are handled one after the other, in the order they were received.
+ */
+@Component
+@Scope("singleton")
+public class WebhookEventsQueue {
+
+    private static final Logger log = LogManager.getLogger(WebhookEventsQueue.class);
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private final int                           capacity;
+    private final int                           workers;
+    private final QueueOverflowPolicy           overflowPolicy;
+    private final List<BlockingQueue<Runnable>> lanes     = new ArrayList<>();
+    private final List<ThreadPoolExecutor>      executors = new ArrayList<>();
+
+    private final AtomicLong    accepted      = new AtomicLong();
+    private final AtomicLong    rejected      = new AtomicLong();
+    private final AtomicLong    discarded     = new AtomicLong();
+    private final AtomicLong    callerRuns    = new AtomicLong();
+    private final AtomicLong    processed     = new AtomicLong();
+    private final AtomicLong    failed        = new AtomicLong();
+    private final AtomicInteger highWaterMark = new AtomicInteger();
+
+    @Autowired
+    public WebhookEventsQueue(ApplicationSettings applicationSettings) {
+        ConfigStructure config = applicationSettings.getConfig();
+        this.workers = Math.max(1, config.getEventsQueueWorkers());
+        this.capacity = Math.max(workers, config.getEventsQueueCapacity());
+        this.overflowPolicy = config.getEventsQueueOverflowPolicy();
+
+        int laneCapacity = capacity / workers;
+        for (int i = 0; i < workers; i++) {
+            BlockingQueue<Runnable> lane = new ArrayBlockingQueue<>(laneCapacity);
+            String threadName = "gitlab-events-worker-" + (i + 1);
+            lanes.add(lane);
+            executors.add(new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, lane, runnable -> {
+                Thread thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.AbortPolicy()));
+        }
+
+        log.info(String.format("GitLab events queue created: capacity=%d, workers=%d, overflowPolicy=%s",
+                capacity, workers, overflowPolicy));
+    }
+
+    /**
+     * Queues an event handling task.
+     * Tasks submitted with the same partition key are executed serially, in submission order.
+     * Note that with the CALLER_RUNS overflow policy a task that does not fit into the queue runs on the calling thread,
+     * which may break this order.
+     * @param partitionKey the key of the partition the event belongs to, for example the pipeline id
+     * @param task the handling of a single GitLab event
+     * @return false if the event could not be queued and was dropped, otherwise - true.
+     */
+    public boolean submit(long partitionKey, Runnable task) {
+        int laneIndex = Math.floorMod(Long.hashCode(partitionKey), workers);
+        Runnable trackedTask = track(task);
+        if (tryExecute(laneIndex, trackedTask)) {
+            return true;
+        }
+
+        if (executors.get(laneIndex).isShutdown()) {
+            rejected.incrementAndGet();
+            return false;
+        }
+
+        switch (overflowPolicy) {
+            case CALLER_RUNS:
+                callerRuns.incrementAndGet();
+                trackedTask.run();
+                return true;
+            case DISCARD_OLDEST:
+                if (lanes.get(laneIndex).poll() != null) {
+                    discarded.incrementAndGet();
+                    log.warn("The GitLab events queue is full, the oldest queued event was discarded");
+                }
+                if (tryExecute(laneIndex, trackedTask)) {
+                    return true;
+                }
+                // fall through
+            default:
+                rejected.incrementAndGet();
+                return false;
+        }
+    }
+
+    private boolean tryExecute(int laneIndex, Runnable trackedTask) {
+        try {
+            executors.get(laneIndex).execute(trackedTask);
+            accepted.incrementAndGet();
+            highWaterMark.accumulateAndGet(lanes.get(laneIndex).size(), Math::max);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private Runnable track(Runnable task) {
+        return () -> {
+            try {
+                task.run();
+                processed.incrementAndGet();
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                log.warn("An error occurred while handling a queued GitLab event", e);
+            }
+        };
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("capacity", capacity);
+        metrics.put("workers", workers);
+        metrics.put("overflowPolicy", overflowPolicy.name());
+        metrics.put("queued", lanes.stream().mapToInt(BlockingQueue::size).sum());
+        metrics.put("busiestLaneQueued", lanes.stream().mapToInt(BlockingQueue::size).max().orElse(0));
+        metrics.put("laneHighWaterMark", highWaterMark.get());
+        metrics.put("activeWorkers", executors.stream().mapToInt(ThreadPoolExecutor::getActiveCount).sum());
+        metrics.put("accepted", accepted.get());
+        metrics.put("rejected", rejected.get());
+        metrics.put("discarded", discarded.get());
+        metrics.put("callerRuns", callerRuns.get());
+        metrics.put("processed", processed.get());
+        metrics.put("failed", failed.get());
+        return metrics;
+    }
+
+    @PreDestroy
+    private void stop() {
+        log.info("Stopping the GitLab events queue, " + lanes.stream().mapToInt(BlockingQueue::size).sum() +
+                 " events are still queued");
+        executors.forEach(ThreadPoolExecutor::shutdown);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SHUTDOWN_TIMEOUT_SECONDS);
+        try {
+            for (ThreadPoolExecutor executor : executors) {
+                long remaining = Math.max(0, deadline - System.nanoTime());
+                if (!executor.awaitTermination(remaining, TimeUnit.NANOSECONDS)) {
+                    log.warn("The GitLab events queue was not drained in time, " + executor.shutdownNow().size() +
+                             " events were dropped");
+                }
+            }
+        } catch (InterruptedException e) {
+            executors.forEach(ThreadPoolExecutor::shutdownNow);
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -91,6 +91,7 @@ public class Application {
             MergeRequestHistoryHandler mrHistoryHandler = context.getBean(MergeRequestHistoryHandler.class);
             mrHistoryHandler.executeFirstScan();
             mrHistoryHandler.startListening();
+            mrHistoryHandler.startSync();
 
             System.out.println("Connection to Octane was successful. gitlab application is ready...");
 
@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright 2017-2023 Open Text.
+ *
+ * The only warranties for products and services of Open Text and
+ * its affiliates and licensors (“Open Text”) are as may be set forth
+ * in the express warranty statements accompanying such products and services.
+ * Nothing herein should be construed as constituting an additional warranty.
+ * Open Text shall not be liable for technical or editorial errors or
+ * omissions contained herein. The information contained herein is subject
+ * to change without notice.
+ *
+ * Except as specifically indicated otherwise, this document contains
+ * confidential information and a valid license is required for possession,
+ * use or copying. If this work is provided to the U.S. Government,
+ * consistent with FAR 12.211 and 12.212, Commercial Computer Software,
+ * Computer Software Documentation, and Technical Data for Commercial Items are
+ * licensed to the U.S. Government under vendor's standard commercial license.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.microfocus.octane.gitlab.helpers;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/*
+ * A single entry of a job artifacts zip.
+ * The content is never loaded into memory: every call to openReader() streams the entry from the zip again,
+ * decoded with the detected charset and without the BOM or any leading garbage before the first tag.
+ */
+public class ArtifactEntry {
+
+    private static final int LEADING_GARBAGE_LIMIT = 4096;
+
+    private final ZipFile  zipFile;
+    private final ZipEntry entry;
+    private       Charset  charset;
+
+    ArtifactEntry(ZipFile zipFile, ZipEntry entry) {
+        this.zipFile = zipFile;
+        this.entry = entry;
+    }
+
+    public String getName() {
+        return entry.getName();
+    }
+
+    public Charset getCharset() throws IOException {
+        if (charset == null) {
+            String encoding;
+            try (InputStream is = zipFile.getInputStream(entry)) {
+                encoding = EncodingHelper.detectCharsetStreaming(is);
+            }
+            try {
+                charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+            } catch (IllegalArgumentException e) {
+                charset = StandardCharsets.UTF_8;
+            }
+        }
+        return charset;
+    }
+
+    public Reader openReader() throws IOException {
+        Reader reader = new BufferedReader(new InputStreamReader(zipFile.getInputStream(entry), getCharset()));
+        try {
+            skipLeadingGarbage(reader);
+        } catch (IOException e) {
+            reader.close();
+            throw e;
+        }
+        return reader;
+    }
+
+    /**
+     * Copies the cleaned content of the entry to a file, encoded with the charset of the entry.
+     */
+    public void copyTo(File target) throws IOException {
+        try (Reader reader = openReader(); Writer writer = Files.newBufferedWriter(target.toPath(), getCharset())) {
+            reader.transferTo(writer);
+        }
+    }
+
+    /*
+     * Skips whatever precedes the first '<' (BOM, whitespaces, etc.), as long as it contains no word characters.
+     */
+    private static void skipLeadingGarbage(Reader reader) throws IOException {
+        reader.mark(LEADING_GARBAGE_LIMIT);
+        int skip = 0;
+        boolean tagFound = false;
+        while (skip < LEADING_GARBAGE_LIMIT) {
+            int c = reader.read();
+            if (c == -1 || isWordCharacter(c)) {
+                break;
+            }
+            if (c == '<') {
+                tagFound = true;
+                break;
+            }
+            skip++;
+        }
+        reader.reset();
+        if (tagFound && skip > 0) {
+            reader.skip(skip);
+        }
+    }
+
+    private static boolean isWordCharacter(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+}
@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright 2017-2023 Open Text.
+ *
+ * The only warranties for products and services of Open Text and
+ * its affiliates and licensors (“Open Text”) are as may be set forth
+ * in the express warranty statements accompanying such products and services.
+ * Nothing herein should be construed as constituting an additional warranty.
+ * Open Text shall not be liable for technical or editorial errors or
+ * omissions contained herein. The information contained herein is subject
+ * to change without notice.
+ *
+ * Except as specifically indicated otherwise, this document contains
+ * confidential information and a valid license is required for possession,
+ * use or copying. If this work is provided to the U.S. Government,
+ * consistent with FAR 12.211 and 12.212, Commercial Computer Software,
+ * Computer Software Documentation, and Technical Data for Commercial Items are
+ * licensed to the U.S. Government under vendor's standard commercial license.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+package com.microfocus.octane.gitlab.helpers;
+
+import com.hp.octane.integrations.dto.DTOFactory;
+import com.hp.octane.integrations.dto.scm.Branch;
+import com.hp.octane.integrations.dto.scm.CIBranchesList;
+import com.microfocus.octane.gitlab.app.ApplicationSettings;
+import org.gitlab4j.api.GitLabApi;
+import org.gitlab4j.api.GitLabApiException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/*
+ * Lists the branches and the tags of a project for the branch picker of ALM Octane.
+ * The filter is applied by GitLab, the branches and then the tags are read page by page only until
+ * gitlab.branchesList.maxResults names are found, and the lists are cached per project and filter
+ * until the next push (or tag push) event of the project.
+ */
+@Component
+@Scope("singleton")
+public class BranchesListProvider {
+
+    private static final DTOFactory dtoFactory = DTOFactory.getInstance();
+    private static final long TIME_TO_LIVE = TimeUnit.MINUTES.toMillis(10);
+    private static final int MAX_SIZE = 1000;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final String KEY_SEPARATOR = "#";
+
+    private final GitLabApi gitLabApi;
+    private final int maxResults;
+    private final ExpiringCache<String, List<Branch>> branchesLists = new ExpiringCache<>(TIME_TO_LIVE, MAX_SIZE);
+
+    @Autowired
+    public BranchesListProvider(ApplicationSettings applicationSettings, GitLabApiWrapper gitLabApiWrapper) {
+        this.gitLabApi = gitLabApiWrapper.getGitLabApi();
+        this.maxResults = applicationSettings.getConfig().getBranchesListMaxResults();
+    }
+
+    public CIBranchesList getBranchesList(String pathWithNamespace, String filterBranchName) throws GitLabApiException {
+        String key = getKey(pathWithNamespace) + (filterBranchName != null ? filterBranchName : "");
+        List<Branch> branches = branchesLists.get(key);
+        if (branches == null) {
+            branches = loadBranchesList(pathWithNamespace, filterBranchName);
+            branchesLists.put(key, branches);
+        }
+        return dtoFactory.newDTO(CIBranchesList.class).setBranches(branches);
+    }
+
+    public void invalidate(String pathWithNamespace) {
+        String prefix = getKey(pathWithNamespace);
+        branchesLists.invalidateIf(key -> key.startsWith(prefix));
+    }
+
+    private List<Branch> loadBranchesList(String path, String filterBranchName) throws GitLabApiException {
+        int pageSize = Math.min(maxResults, MAX_PAGE_SIZE);
+        Stream<String> branchNames = gitLabApi.getRepositoryApi().getBranches(path, filterBranchName, pageSize)
+                .lazyStream().map(org.gitlab4j.api.models.Branch::getName);
+        Stream<String> tagNames = Stream.of(path).flatMap(project -> {
+            //only read when the branches did not fill the list
+            try {
+                return gitLabApi.getTagsApi().getTags(project, null, null, filterBranchName, pageSize)
+                        .lazyStream().map(org.gitlab4j.api.models.Tag::getName);
+            } catch (GitLabApiException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        try {
+            return Stream.concat(branchNames, tagNames)
+                    .limit(maxResults)
+                    .map(name -> dtoFactory.newDTO(Branch.class)
+                            .setName(name)
+                            .setInternalId(ParsedPath.convertBranchName(name)))
+                    .collect(Collectors.toList());
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof GitLabApiException) {
+                throw (GitLabApiException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static String getKey(String pathWithNamespace) {
+        return pathWithNamespace.toLowerCase() + KEY_SEPARATOR;
+    }
+}
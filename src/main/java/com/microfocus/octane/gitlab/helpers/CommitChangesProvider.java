@@ -0,0 +1,257 @@
+/*******************************************************************************
+ * Copyright 2017-2023 Open Text.
+ *
+ * The only warranties for products and services of Open Text and
+ * its affiliates and licensors (“Open Text”) are as may be set forth
+ * in the express warranty statements accompanying such products and services.
+ * Nothing herein should be construed as constituting an additional warranty.
+ * Open Text shall not be liable for technical or editorial errors or
+ * omissions contained herein. The information contained herein is subject
+ * to change without notice.
+ *
+ * Except as specifically indicated otherwise, this document contains
+ * confidential information and a valid license is required for possession,
+ * use or copying. If this work is provided to the U.S. Government,
+ * consistent with FAR 12.211 and 12.212, Commercial Computer Software,
+ * Computer Software Documentation, and Technical Data for Commercial Items are
+ * licensed to the U.S. Government under vendor's standard commercial license.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+package com.microfocus.octane.gitlab.helpers;
+
+import com.hp.octane.integrations.dto.DTOFactory;
+import com.hp.octane.integrations.dto.scm.SCMChange;
+import com.microfocus.octane.gitlab.app.ApplicationSettings;
+import com.microfocus.octane.gitlab.model.ConfigStructure;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.gitlab4j.api.GitLabApi;
+import org.gitlab4j.api.GitLabApiException;
+import org.gitlab4j.api.models.Diff;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/*
+ * Provides the SCM changes (the diffs) of commits, for the SCM data of the pipelines and for the merge requests.
+ * The diffs of the commits are read concurrently by at most gitlab.scm.diffParallelism threads, and at most
+ * gitlab.scm.diffRequestsPerSecond per second. As the diff of a commit never changes, only its compact SCM changes (path and change type) are kept, by project and commit sha,
+ * in a bounded LRU cache (gitlab.scm.diffCacheSize entries). When gitlab.scm.diffCacheFolderPath is set, they are also
+ * written to that folder, so that they survive both the eviction from the memory and a restart of the service. The spilled
+ * files expire after the same time to live as the memory entries, and the expired ones are deleted once a day.
+ * The cached changes are never handed out: the SCM changes are mutable DTOs, so every caller gets its own copies.
+ */
+@Component
+@Scope("singleton")
+public class CommitChangesProvider {
+
+    private static final Logger log = LogManager.getLogger(CommitChangesProvider.class);
+    private static final DTOFactory dtoFactory = DTOFactory.getInstance();
+    private static final long TIME_TO_LIVE = TimeUnit.DAYS.toMillis(7);
+    private static final String FIELD_SEPARATOR = "\t";
+    private static final long PRUNE_INTERVAL = TimeUnit.DAYS.toMillis(1);
+
+    private final GitLabApi gitLabApi;
+    private final ExecutorService executor;
+    private final RateLimiter rateLimiter;
+    private final ExpiringCache<String, List<SCMChange>> changes;
+    private final Path spillFolder;
+    private final ScheduledExecutorService pruneExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    @Autowired
+    public CommitChangesProvider(ApplicationSettings applicationSettings, GitLabApiWrapper gitLabApiWrapper) {
+        ConfigStructure config = applicationSettings.getConfig();
+        this.gitLabApi = gitLabApiWrapper.getGitLabApi();
+        this.executor = Executors.newFixedThreadPool(config.getScmDiffParallelism());
+        this.rateLimiter = new RateLimiter(config.getScmDiffRequestsPerSecond());
+        this.changes = new ExpiringCache<>(TIME_TO_LIVE, config.getScmDiffCacheSize());
+        this.spillFolder = config.getScmDiffCacheFolderPath() == null || config.getScmDiffCacheFolderPath().isEmpty() ?
+                           null : Paths.get(config.getScmDiffCacheFolderPath());
+        if (spillFolder != null) {
+            pruneExecutor.scheduleWithFixedDelay(this::pruneSpilledChanges, 0, PRUNE_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    private void stop() {
+        executor.shutdownNow();
+        pruneExecutor.shutdownNow();
+    }
+
+    /*
+     * Returns the changes of each commit, in the order of the commits; null for the commits whose diff failed to load.
+     */
+    public List<List<SCMChange>> getChanges(long projectId, List<String> commitShas) {
+        List<CompletableFuture<List<SCMChange>>> futures = new ArrayList<>(commitShas.size());
+        for (String sha : commitShas) {
+            List<SCMChange> cached = changes.get(getKey(projectId, sha));
+            futures.add(cached != null ? CompletableFuture.completedFuture(copyOf(cached)) :
+                        CompletableFuture.supplyAsync(() -> getChanges(projectId, sha), executor));
+        }
+        return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+    }
+
+    /*
+     * Returns the changes by commit sha, without the commits whose diff failed to load.
+     */
+    public Map<String, List<SCMChange>> getChangesBySha(long projectId, List<String> commitShas) {
+        List<List<SCMChange>> commitsChanges = getChanges(projectId, commitShas);
+        Map<String, List<SCMChange>> changesBySha = new HashMap<>();
+        for (int i = 0; i < commitShas.size(); i++) {
+            if (commitsChanges.get(i) != null) {
+                changesBySha.put(commitShas.get(i), commitsChanges.get(i));
+            }
+        }
+        return changesBySha;
+    }
+
+    public List<SCMChange> getChanges(long projectId, String sha) {
+        //a failed load is not cached, so that it is retried
+        return copyOf(changes.getOrLoad(getKey(projectId, sha), () -> {
+            List<SCMChange> commitChanges = readSpilledChanges(projectId, sha);
+            return commitChanges != null ? commitChanges : loadChanges(projectId, sha);
+        }));
+    }
+
+    private static List<SCMChange> copyOf(List<SCMChange> commitChanges) {
+        return commitChanges == null ? null : commitChanges.stream()
+                .map(change -> createChange(change.getType(), change.getFile()))
+                .collect(Collectors.toList());
+    }
+
+    private List<SCMChange> loadChanges(long projectId, String sha) {
+        try {
+            rateLimiter.acquire();
+            List<Diff> diffs = gitLabApi.getCommitsApi().getDiff(projectId, sha);
+            List<SCMChange> commitChanges = new ArrayList<>();
+            diffs.forEach(d -> commitChanges.add(createChange(
+                    d.getNewFile() ? "add" : d.getDeletedFile() ? "delete" : "edit", d.getNewPath())));
+            spillChanges(projectId, sha, commitChanges);
+            return Collections.unmodifiableList(commitChanges);
+        } catch (GitLabApiException e) {
+            log.warn("Failed to get the diff of commit " + sha, e);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static SCMChange createChange(String type, String file) {
+        SCMChange change = dtoFactory.newDTO(SCMChange.class);
+        change.setFile(file);
+        change.setType(type);
+        return change;
+    }
+
+    private Path getSpillFile(long projectId, String sha) {
+        return spillFolder.resolve(Long.toString(projectId)).resolve(sha);
+    }
+
+    /*
+     * One line per change: the change type and the URL encoded path, separated by a tab.
+     */
+    private void spillChanges(long projectId, String sha, List<SCMChange> commitChanges) {
+        if (spillFolder == null) {
+            return;
+        }
+        try {
+            Path spillFile = getSpillFile(projectId, sha);
+            Files.createDirectories(spillFile.getParent());
+            Path tempFile = Files.createTempFile(spillFile.getParent(), sha, ".tmp");
+            Files.write(tempFile, commitChanges.stream()
+                    .map(change -> change.getType() + FIELD_SEPARATOR + URLEncoder.encode(change.getFile(), StandardCharsets.UTF_8))
+                    .collect(Collectors.toList()), StandardCharsets.UTF_8);
+            Files.move(tempFile, spillFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to write the changes of commit " + sha + " to " + spillFolder, e);
+        }
+    }
+
+    private List<SCMChange> readSpilledChanges(long projectId, String sha) {
+        if (spillFolder == null || !Files.exists(getSpillFile(projectId, sha))) {
+            return null;
+        }
+        try {
+            //an expired file is read again from GitLab, and then overwritten
+            if (isExpired(getSpillFile(projectId, sha))) {
+                return null;
+            }
+            return Files.readAllLines(getSpillFile(projectId, sha), StandardCharsets.UTF_8).stream()
+                    .map(line -> line.split(FIELD_SEPARATOR, 2))
+                    .map(fields -> createChange(fields[0], URLDecoder.decode(fields[1], StandardCharsets.UTF_8)))
+                    .collect(Collectors.collectingAndThen(Collectors.toList(), Collections::unmodifiableList));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to read the changes of commit " + sha + " from " + spillFolder, e);
+            return null;
+        }
+    }
+
+    private static boolean isExpired(Path spillFile) throws IOException {
+        return Files.getLastModifiedTime(spillFile).toMillis() < System.currentTimeMillis() - TIME_TO_LIVE;
+    }
+
+    private void pruneSpilledChanges() {
+        if (!Files.isDirectory(spillFolder)) {
+            return;
+        }
+        List<Path> spillFiles;
+        try (Stream<Path> files = Files.walk(spillFolder)) {
+            spillFiles = files.filter(Files::isRegularFile).collect(Collectors.toList());
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Failed to list the changes of the commits in " + spillFolder, e);
+            return;
+        }
+        int deleted = 0;
+        for (Path spillFile : spillFiles) {
+            try {
+                if (isExpired(spillFile) && Files.deleteIfExists(spillFile)) {
+                    deleted++;
+                }
+            } catch (IOException e) {
+                log.warn("Failed to delete the expired changes file " + spillFile + ": " + e.getMessage());
+            }
+        }
+        if (deleted > 0) {
+            log.info("Deleted the expired changes of " + deleted + " commits from " + spillFolder);
+        }
+    }
+
+    private static String getKey(long projectId, String sha) {
+        return projectId + "#" + sha;
+    }
+}
@@ -15,4 +15,20 @@ public class EncodingHelper {
     public static String detectCharset(File file) throws IOException {
         return UniversalDetector.detectCharset(file);
     }
+
+    /**
+     * Detects the charset of a stream chunk by chunk, without keeping its content in memory.
+     * The detection stops as soon as the detector is sure about the charset.
+     * @return the detected charset, or null if it could not be detected
+     */
+    public static String detectCharsetStreaming(InputStream is) throws IOException {
+        UniversalDetector detector = new UniversalDetector(null);
+        byte[] buf = new byte[4096];
+        int n;
+        while ((n = is.read(buf)) > 0 && !detector.isDone()) {
+            detector.handleData(buf, 0, n);
+        }
+        detector.dataEnd();
+        return detector.getDetectedCharset();
+    }
 }
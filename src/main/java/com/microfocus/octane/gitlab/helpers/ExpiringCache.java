@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright 2017-2023 Open Text.
+ *
+ * The only warranties for products and services of Open Text and
+ * its affiliates and licensors (“Open Text”) are as may be set forth
+ * in the express warranty statements accompanying such products and services.
+ * Nothing herein should be construed as constituting an additional warranty.
+ * Open Text shall not be liable for technical or editorial errors or
+ * omissions contained herein. The information contained herein is subject
+ * to change without notice.
+ *
+ * Except as specifically indicated otherwise, this document contains
+ * confidential information and a valid license is required for possession,
+ * use or copying. If this work is provided to the U.S. Government,
+ * consistent with FAR 12.211 and 12.212, Commercial Computer Software,
+ * Computer Software Documentation, and Technical Data for Commercial Items are
+ * licensed to the U.S. Government under vendor's standard commercial license.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.microfocus.octane.gitlab.helpers;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/*
+ * A small thread safe in-memory cache: entries expire after a fixed time to live, and once the cache is full
+ * the least recently used entry is evicted.
+ * getOrLoad() loads a missing value only once, even when it is asked for by several threads at the same time.
+ * A key invalidated while its value is being loaded is not cached with that value, as it may have been read before the
+ * invalidation.
+ */
+public class ExpiringCache<K, V> {
+
+    private final long timeToLiveMillis;
+    private final int maxSize;
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private final Map<K, Load<V>> loading = new ConcurrentHashMap<>();
+
+    private static class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static class Load<V> extends CompletableFuture<V> {
+        /* guarded by the cache */
+        private boolean invalidated;
+    }
+
+    public ExpiringCache(long timeToLiveMillis, int maxSize) {
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > ExpiringCache.this.maxSize;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /*
+     * Returns the cached value, or loads it. Threads asking for a key that is being loaded wait for that load instead of
+     * starting their own. Null values are returned but not cached.
+     */
+    public V getOrLoad(K key, Supplier<V> loader) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+
+        Load<V> load = new Load<>();
+        CompletableFuture<V> inProgress = loading.putIfAbsent(key, load);
+        if (inProgress != null) {
+            return inProgress.join();
+        }
+
+        try {
+            value = get(key);
+            if (value == null) {
+                value = loader.get();
+                if (value != null) {
+                    putUnlessInvalidated(key, value, load);
+                }
+            }
+            load.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, load);
+        }
+    }
+
+    public synchronized void put(K key, V value) {
+        entries.put(key, new Entry<>(value, System.currentTimeMillis() + timeToLiveMillis));
+    }
+
+    private synchronized void putUnlessInvalidated(K key, V value, Load<V> load) {
+        if (!load.invalidated) {
+            put(key, value);
+        }
+    }
+
+    public synchronized void invalidate(K key) {
+        entries.remove(key);
+        Load<V> load = loading.get(key);
+        if (load != null) {
+            load.invalidated = true;
+        }
+    }
+
+    public synchronized void invalidateIf(Predicate<K> predicate) {
+        entries.keySet().removeIf(predicate);
+        loading.forEach((key, load) -> {
+            if (predicate.test(key)) {
+                load.invalidated = true;
+            }
+        });
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+        loading.values().forEach(load -> load.invalidated = true);
+    }
+
+    public synchronized int size() {
+        removeExpired();
+        return entries.size();
+    }
+
+    private void removeExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<Entry<V>> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expiresAt <= now) {
+                iterator.remove();
+            }
+        }
+    }
+}
@@ -31,6 +31,8 @@ package com.microfocus.octane.gitlab.helpers;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.gitlab4j.api.Constants;
+import org.gitlab4j.api.GitLabApi;
 import org.gitlab4j.api.GitLabApiClient;
 import org.gitlab4j.api.models.Variable;
 import org.json.JSONArray;
@@ -40,14 +42,15 @@ import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 public final class GitLabAPiClientImpl extends GitLabApiClient {
 
     private static final String INSTANCE_VARIABLES_PATH = "admin/ci/variables";
     private static final Logger log = LogManager.getLogger(GitLabAPiClientImpl.class);
 
-    public GitLabAPiClientImpl(String hostUrl, String gitlabPersonalAccessToken) {
-        super(hostUrl, gitlabPersonalAccessToken);
+    public GitLabAPiClientImpl(String hostUrl, String gitlabPersonalAccessToken, Map<String, Object> clientConfigProperties) {
+        super(GitLabApi.ApiVersion.V4, hostUrl, Constants.TokenType.PRIVATE, gitlabPersonalAccessToken, null, clientConfigProperties);
     }
 
     public List<Variable> getInstanceVariables() {
@@ -60,6 +60,7 @@ public class GitLabApiWrapper {
 
     private final ApplicationSettings applicationSettings;
     private GitLabApi gitLabApi;
+    private GitLabAPiClientImpl gitLabApiClient;
     private static final Logger log = LogManager.getLogger(GitLabApiWrapper.class);
 
     @Autowired
@@ -98,6 +99,7 @@ public class GitLabApiWrapper {
             }
         }
         gitLabApi = new GitLabApi(config.getGitlabLocation(), gitlabPersonalAccessToken, null, proxyConfig);
+        gitLabApiClient = new GitLabAPiClientImpl(config.getGitlabLocation(), gitlabPersonalAccessToken, proxyConfig);
         try {
             gitLabApi.getProjectApi().getOwnedProjects();
         } catch (GitLabApiException e) {
@@ -113,6 +115,13 @@ public class GitLabApiWrapper {
         return gitLabApi;
     }
 
+    /*
+     * A client for the REST endpoints gitlab4j does not cover (e.g. the instance variables), shared by the whole service.
+     */
+    public GitLabAPiClientImpl getGitLabApiClient() {
+        return gitLabApiClient;
+    }
+
     /* public boolean isUserHasPermissionForProject(Project project,User currentUser) {
         try {
             Optional<Member> currentMember = gitLabApi.getProjectApi().getAllMembers(project.getId())
@@ -57,6 +57,9 @@ public final class HooksHelper {
             hook.setJobEvents(true);
             hook.setPipelineEvents(true);
             hook.setMergeRequestsEvents(true);
+            //push events are on by default in GitLab, set here only to make the dependency of the caches explicit
+            hook.setPushEvents(true);
+            hook.setTagPushEvents(true);
 
             gitLabApi.getProjectApi().addHook(projectId, webhookURL.toString(), hook, false, generateNewToken());
         } catch (GitLabApiException e){
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright 2017-2023 Open Text.
+ *
+ * The only warranties for products and services of Open Text and
+ * its affiliates and licensors (“Open Text”) are as may be set forth
+ * in the express warranty statements accompanying such products and services.
+ * Nothing herein should be construed as constituting an additional warranty.
+ * Open Text shall not be liable for technical or editorial errors or
+ * omissions contained herein. The information contained herein is subject
+ * to change without notice.
+ *
+ * Except as specifically indicated otherwise, this document contains
+ * confidential information and a valid license is required for possession,
+ * use or copying. If this work is provided to the U.S. Government,
+ * consistent with FAR 12.211 and 12.212, Commercial Computer Software,
+ * Computer Software Documentation, and Technical Data for Commercial Items are
+ * licensed to the U.S. Government under vendor's standard commercial license.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.microfocus.octane.gitlab.helpers;
+
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Remembers where the GitLab job behind an ALM Octane (job id, build id) pair lives, as learned from the webhook events,
+ * so that the SDK callbacks (e.g. getTestsResult) do not have to search for the project the job belongs to.
+ */
+@Component
+@Scope("singleton")
+public class JobLocationIndex {
+
+    private static final long TIME_TO_LIVE = TimeUnit.DAYS.toMillis(1);
+    private static final int MAX_SIZE = 10000;
+
+    private final ExpiringCache<String, JobLocation> locations = new ExpiringCache<>(TIME_TO_LIVE, MAX_SIZE);
+
+    public static class JobLocation {
+        private final long projectId;
+        private final long jobId;
+
+        public JobLocation(long projectId, long jobId) {
+            this.projectId = projectId;
+            this.jobId = jobId;
+        }
+
+        public long getProjectId() {
+            return projectId;
+        }
+
+        public long getJobId() {
+            return jobId;
+        }
+    }
+
+    public void put(String octaneJobId, String buildId, long projectId, long jobId) {
+        locations.put(getKey(octaneJobId, buildId), new JobLocation(projectId, jobId));
+    }
+
+    /*
+     * Returns null when the job is unknown, e.g. when its events were received before the service was restarted.
+     */
+    public JobLocation get(String octaneJobId, String buildId) {
+        return locations.get(getKey(octaneJobId, buildId));
+    }
+
+    public int size() {
+        return locations.size();
+    }
+
+    private static String getKey(String octaneJobId, String buildId) {
+        return octaneJobId.toLowerCase() + "#" + buildId;
+    }
+}
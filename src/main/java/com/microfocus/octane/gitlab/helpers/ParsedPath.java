@@ -40,20 +40,23 @@ import org.gitlab4j.api.models.Project;
 import javax.validation.constraints.NotNull;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
 public class ParsedPath {
 
     public static final String BRANCH_WITH_SLASH_SEPARATOR = "/~~/";
     public static final String PIPELINE_JOB_CI_ID_PREFIX = "pipeline:";
+    private static final int BRANCHES_PAGE_SIZE = 100;
 
     private Project project;
     private String groups;
     private String displayName;
     private String pathWithNameSpace;
-    private List<Branch> branches;
     private String currentBranch;
     private              long      id;
     private final        GitLabApi gitlabApi;
+    private final        ParsedPathResolver resolver;
+    private ParsedPathResolver.ProjectDescriptor descriptor;
     private static final Logger    log = LogManager.getLogger(ParsedPath.class);
     private String nameWithNameSpaceForDisplayName;
 
@@ -105,13 +108,19 @@ public class ParsedPath {
     }
 
     public ParsedPath(String path, GitLabApi gitLabApi, PathType pathType) {
+        this(path, gitLabApi, null, pathType);
+    }
+
+    public ParsedPath(String path, GitLabApi gitLabApi, ParsedPathResolver resolver, PathType pathType) {
         gitlabApi = gitLabApi;
+        this.resolver = resolver;
         init(path, pathType);
     }
 
     public ParsedPath(Project project, GitLabApi gitLabApi) {
         this.project = project;
         gitlabApi = gitLabApi;
+        this.resolver = null;
         this.groups = project.getNamespace().getFullPath();
         this.displayName = project.getName();
         this.pathWithNameSpace = project.getPathWithNamespace();
@@ -176,23 +185,33 @@ public class ParsedPath {
         this.displayName = displayName;
     }
 
-    public List<Branch> getBranches() {
-        if (branches == null) {
-            try {
-                branches = gitlabApi.getRepositoryApi().getBranches( this.getPathWithNameSpace());
-            } catch (GitLabApiException e) {
-                if (log.isDebugEnabled()) {
-                    log.debug("failed while getting branches from " + this.getPathWithNameSpace(), e);
-                } else {
-                    log.warn("failed while getting branches from " + this.getPathWithNameSpace());
-                }
+    /*
+     * The branches are read page by page, as the stream is consumed.
+     */
+    public Stream<Branch> getBranches() {
+        try {
+            return gitlabApi.getRepositoryApi().getBranches(this.getPathWithNameSpace(), BRANCHES_PAGE_SIZE).lazyStream();
+        } catch (GitLabApiException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("failed while getting branches from " + this.getPathWithNameSpace(), e);
+            } else {
+                log.warn("failed while getting branches from " + this.getPathWithNameSpace());
             }
+            return Stream.empty();
         }
-        return branches;
     }
 
     public long getId() {
         if (project == null) {
+            if (resolver != null) {
+                ParsedPathResolver.ProjectDescriptor resolved = getDescriptor();
+                if (resolved != null) {
+                    id = resolved.getId();
+                } else {
+                    log.error("failed while getting project from " + this.getPathWithNameSpace());
+                }
+                return id;
+            }
             try {
                 this.project = gitlabApi.getProjectApi().getProject(this.getPathWithNameSpace());
                 this.id = project.getId();
@@ -204,6 +223,11 @@ public class ParsedPath {
     }
     public String getNameWithNameSpaceForDisplayName(){
         if (project == null) {
+            if (resolver != null) {
+                ParsedPathResolver.ProjectDescriptor resolved = getDescriptor();
+                this.nameWithNameSpaceForDisplayName = resolved != null ? resolved.getNameWithNamespace() : null;
+                return this.nameWithNameSpaceForDisplayName;
+            }
             try {
                 this.project = gitlabApi.getProjectApi().getProject(this.getPathWithNameSpace());
             } catch (Exception e) {
@@ -215,12 +239,20 @@ public class ParsedPath {
         return this.nameWithNameSpaceForDisplayName;
     }
 
+    private ParsedPathResolver.ProjectDescriptor getDescriptor() {
+        if (descriptor == null) {
+            descriptor = resolver.resolve(this.getPathWithNameSpace());
+        }
+        return descriptor;
+    }
+
     public String getCurrentBranchOrDefault() {
         if(currentBranch!= null)
             return currentBranch;
 
-        if(!getBranches().isEmpty()){
-            return getDefaultBranch();
+        String defaultBranch = getDefaultBranch();
+        if(defaultBranch != null){
+            return defaultBranch;
         }else{
              throw new ArrayIndexOutOfBoundsException ("there is not branches for this project, the project is empty:"+this.displayName);
         }
@@ -233,11 +265,18 @@ public class ParsedPath {
 
     @NotNull
     public String getDefaultBranch() {
-        List<Branch> branches = getBranches();
-        return branches.stream()
-                .filter(Branch::getDefault)
-                .findAny().map(Branch::getName)
-                .orElse(null);
+        if (resolver != null) {
+            return getDescriptor() != null ? getDescriptor().getDefaultBranch() : null;
+        }
+        if (project == null) {
+            try {
+                this.project = gitlabApi.getProjectApi().getProject(this.getPathWithNameSpace());
+            } catch (Exception e) {
+                log.warn("failed while getting project from " + this.getPathWithNameSpace());
+                return null;
+            }
+        }
+        return project.getDefaultBranch();
     }
 
 }
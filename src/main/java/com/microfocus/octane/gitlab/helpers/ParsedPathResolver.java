@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright 2017-2023 Open Text.
+ *
+ * The only warranties for products and services of Open Text and
+ * its affiliates and licensors (“Open Text”) are as may be set forth
+ * in the express warranty statements accompanying such products and services.
+ * Nothing herein should be construed as constituting an additional warranty.
+ * Open Text shall not be liable for technical or editorial errors or
+ * omissions contained herein. The information contained herein is subject
+ * to change without notice.
+ *
+ * Except as specifically indicated otherwise, this document contains
+ * confidential information and a valid license is required for possession,
+ * use or copying. If this work is provided to the U.S. Government,
+ * consistent with FAR 12.211 and 12.212, Commercial Computer Software,
+ * Computer Software Documentation, and Technical Data for Commercial Items are
+ * licensed to the U.S. Government under vendor's standard commercial license.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+package com.microfocus.octane.gitlab.helpers;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.gitlab4j.api.GitLabApiException;
+import org.gitlab4j.api.models.Project;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Resolves the project behind a ParsedPath (built from a job CI id or a path) once for all the events and SDK callbacks
+ * referring to it, instead of once per ParsedPath instance.
+ * The descriptors are dropped by the push events of the project, which create and delete its branches.
+ * The default branch is the one of the project, the branches of the repository are not listed for it.
+ */
+@Component
+@Scope("singleton")
+public class ParsedPathResolver {
+
+    private static final Logger log = LogManager.getLogger(ParsedPathResolver.class);
+    private static final long TIME_TO_LIVE = TimeUnit.HOURS.toMillis(1);
+    private static final int MAX_SIZE = 10000;
+
+    private final ProjectCatalogue projectCatalogue;
+    private final ExpiringCache<String, ProjectDescriptor> descriptors = new ExpiringCache<>(TIME_TO_LIVE, MAX_SIZE);
+
+    public static class ProjectDescriptor {
+        private final long id;
+        private final String nameWithNamespace;
+        private final String defaultBranch;
+
+        public ProjectDescriptor(long id, String nameWithNamespace, String defaultBranch) {
+            this.id = id;
+            this.nameWithNamespace = nameWithNamespace;
+            this.defaultBranch = defaultBranch;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getNameWithNamespace() {
+            return nameWithNamespace;
+        }
+
+        /*
+         * Null when the repository of the project is empty.
+         */
+        public String getDefaultBranch() {
+            return defaultBranch;
+        }
+    }
+
+    @Autowired
+    public ParsedPathResolver(ProjectCatalogue projectCatalogue) {
+        this.projectCatalogue = projectCatalogue;
+    }
+
+    /*
+     * Returns null when the project cannot be resolved; failures are not cached, so that they are retried.
+     */
+    public ProjectDescriptor resolve(String pathWithNamespace) {
+        return descriptors.getOrLoad(pathWithNamespace.toLowerCase(), () -> load(pathWithNamespace));
+    }
+
+    public void invalidate(long projectId, String pathWithNamespace) {
+        projectCatalogue.invalidate(projectId);
+        descriptors.invalidate(pathWithNamespace.toLowerCase());
+    }
+
+    private ProjectDescriptor load(String pathWithNamespace) {
+        try {
+            Project project = projectCatalogue.getProject(pathWithNamespace);
+            return new ProjectDescriptor(project.getId(), project.getNameWithNamespace(), project.getDefaultBranch());
+        } catch (GitLabApiException e) {
+            log.warn("failed while getting project from " + pathWithNamespace);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright 2017-2023 Open Text.
+ *
+ * The only warranties for products and services of Open Text and
+ * its affiliates and licensors (“Open Text”) are as may be set forth
+ * in the express warranty statements accompanying such products and services.
+ * Nothing herein should be construed as constituting an additional warranty.
+ * Open Text shall not be liable for technical or editorial errors or
+ * omissions contained herein. The information contained herein is subject
+ * to change without notice.
+ *
+ * Except as specifically indicated otherwise, this document contains
+ * confidential information and a valid license is required for possession,
+ * use or copying. If this work is provided to the U.S. Government,
+ * consistent with FAR 12.211 and 12.212, Commercial Computer Software,
+ * Computer Software Documentation, and Technical Data for Commercial Items are
+ * licensed to the U.S. Government under vendor's standard commercial license.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+package com.microfocus.octane.gitlab.helpers;
+
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Maps the variables (parameters) of the pipelines to the pipelines, so that the pipeline ALM Octane refers to by a
+ * parameter (e.g. the execution id of an auto action) is found without listing the pipelines of the project and
+ * reading their variables one by one.
+ * Filled when a pipeline is run from ALM Octane and from the pipeline webhook events. Only the pipeline is indexed, not its
+ * status: events can be missed (or handled before the pipeline run from ALM Octane is indexed), so the status is read
+ * from GitLab.
+ * The pipelines are kept by project with their variables, so the bounds count pipelines, however many variables they have:
+ * the latest MAX_PIPELINES_PER_PROJECT pipelines of the latest MAX_PROJECTS projects, for a day.
+ */
+@Component
+@Scope("singleton")
+public class PipelineIndex {
+
+    private static final long TIME_TO_LIVE = TimeUnit.DAYS.toMillis(1);
+    private static final int MAX_PROJECTS = 1000;
+    private static final int MAX_PIPELINES_PER_PROJECT = 100;
+
+    private final ExpiringCache<String, ProjectPipelines> projects = new ExpiringCache<>(TIME_TO_LIVE, MAX_PROJECTS);
+
+    public static class IndexedPipeline {
+        private final long id;
+        private final String ref;
+        private final Map<String, String> variables;
+        private final long indexedAt = System.currentTimeMillis();
+
+        public IndexedPipeline(long id, String ref, Map<String, String> variables) {
+            this.id = id;
+            this.ref = ref;
+            this.variables = variables;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getRef() {
+            return ref;
+        }
+    }
+
+    /*
+     * The indexed pipelines of a project, from the least to the most recently indexed.
+     */
+    private static class ProjectPipelines extends LinkedHashMap<Long, IndexedPipeline> {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, IndexedPipeline> eldest) {
+            return size() > MAX_PIPELINES_PER_PROJECT;
+        }
+    }
+
+    /*
+     * Indexes the pipeline of a webhook event, which reports all its variables.
+     */
+    public void put(String pathWithNamespace, Map<String, String> variables, long pipelineId, String ref) {
+        put(pathWithNamespace, variables, pipelineId, ref, true);
+    }
+
+    /*
+     * Indexes a pipeline just run from ALM Octane, unless an event of the pipeline was already handled.
+     */
+    public void putIfAbsent(String pathWithNamespace, Map<String, String> variables, long pipelineId, String ref) {
+        put(pathWithNamespace, variables, pipelineId, ref, false);
+    }
+
+    private void put(String pathWithNamespace, Map<String, String> variables, long pipelineId, String ref, boolean replace) {
+        if (variables.isEmpty()) {
+            return;
+        }
+        String key = getKey(pathWithNamespace);
+        ProjectPipelines pipelines = projects.getOrLoad(key, ProjectPipelines::new);
+        synchronized (pipelines) {
+            if (!replace && pipelines.containsKey(pipelineId)) {
+                return;
+            }
+            pipelines.remove(pipelineId);
+            pipelines.put(pipelineId, new IndexedPipeline(pipelineId, ref, new HashMap<>(variables)));
+        }
+        //the project stays in the index for a day after its latest pipeline
+        projects.put(key, pipelines);
+    }
+
+    /*
+     * Returns the most recently indexed pipeline of the project which has the parameter, or null when there is none as
+     * far as this service knows.
+     */
+    public IndexedPipeline get(String pathWithNamespace, String parameterName, String parameterValue) {
+        ProjectPipelines pipelines = projects.get(getKey(pathWithNamespace));
+        if (pipelines == null) {
+            return null;
+        }
+        long indexedAfter = System.currentTimeMillis() - TIME_TO_LIVE;
+        IndexedPipeline found = null;
+        synchronized (pipelines) {
+            for (IndexedPipeline pipeline : pipelines.values()) {
+                if (pipeline.indexedAt > indexedAfter && parameterValue.equals(pipeline.variables.get(parameterName))) {
+                    found = pipeline;
+                }
+            }
+        }
+        return found;
+    }
+
+    private static String getKey(String pathWithNamespace) {
+        return pathWithNamespace.toLowerCase();
+    }
+}
@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright 2017-2023 Open Text.
+ *
+ * The only warranties for products and services of Open Text and
+ * its affiliates and licensors (“Open Text”) are as may be set forth
+ * in the express warranty statements accompanying such products and services.
+ * Nothing herein should be construed as constituting an additional warranty.
+ * Open Text shall not be liable for technical or editorial errors or
+ * omissions contained herein. The information contained herein is subject
+ * to change without notice.
+ *
+ * Except as specifically indicated otherwise, this document contains
+ * confidential information and a valid license is required for possession,
+ * use or copying. If this work is provided to the U.S. Government,
+ * consistent with FAR 12.211 and 12.212, Commercial Computer Software,
+ * Computer Software Documentation, and Technical Data for Commercial Items are
+ * licensed to the U.S. Government under vendor's standard commercial license.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+package com.microfocus.octane.gitlab.helpers;
+
+import com.microfocus.octane.gitlab.app.ApplicationSettings;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.gitlab4j.api.Constants;
+import org.gitlab4j.api.GitLabApi;
+import org.gitlab4j.api.GitLabApiException;
+import org.gitlab4j.api.models.Pipeline;
+import org.gitlab4j.api.models.PipelineFilter;
+import org.gitlab4j.api.models.Variable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+
+/*
+ * Finds the pipeline of a project whose variables match, when the pipeline is not in the PipelineIndex.
+ * The pipelines are read newest first, filtered by GitLab, and only the gitlab.pipelines.scanWindow newest ones are
+ * scanned. Their variables are read gitlab.pipelines.scanParallelism pipelines at a time, and the scan stops at the
+ * first match.
+ */
+@Component
+@Scope("singleton")
+public class PipelineScanner {
+
+    private static final Logger log = LogManager.getLogger(PipelineScanner.class);
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final GitLabApi gitLabApi;
+    private final int scanWindow;
+    private final int parallelism;
+    private final ExecutorService executor;
+
+    @Autowired
+    public PipelineScanner(ApplicationSettings applicationSettings, GitLabApiWrapper gitLabApiWrapper) {
+        this.gitLabApi = gitLabApiWrapper.getGitLabApi();
+        this.scanWindow = applicationSettings.getConfig().getPipelinesScanWindow();
+        this.parallelism = applicationSettings.getConfig().getPipelinesScanParallelism();
+        this.executor = Executors.newFixedThreadPool(parallelism);
+    }
+
+    @PreDestroy
+    private void stop() {
+        executor.shutdownNow();
+    }
+
+    public Optional<Pipeline> findPipeline(String path, PipelineFilter filter, Predicate<List<Variable>> variablesMatcher)
+            throws GitLabApiException {
+        filter.withOrderBy(Constants.PipelineOrderBy.ID).withSort(Constants.SortOrder.DESC);
+        Iterator<Pipeline> pipelines = gitLabApi.getPipelineApi()
+                .getPipelines(path, filter, Math.min(scanWindow, MAX_PAGE_SIZE))
+                .lazyStream().limit(scanWindow).iterator();
+
+        while (pipelines.hasNext()) {
+            List<Pipeline> batch = new ArrayList<>(parallelism);
+            while (pipelines.hasNext() && batch.size() < parallelism) {
+                batch.add(pipelines.next());
+            }
+
+            List<Future<Boolean>> matches = new ArrayList<>(batch.size());
+            batch.forEach(pipeline -> matches.add(executor.submit(() -> matches(path, pipeline, variablesMatcher))));
+            try {
+                for (int i = 0; i < batch.size(); i++) {
+                    //the newest matching pipeline of the batch wins
+                    if (matches.get(i).get()) {
+                        return Optional.of(batch.get(i));
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            } finally {
+                matches.forEach(match -> match.cancel(true));
+            }
+        }
+        return Optional.empty();
+    }
+
+    private boolean matches(String path, Pipeline pipeline, Predicate<List<Variable>> variablesMatcher) {
+        try {
+            return variablesMatcher.test(gitLabApi.getPipelineApi().getPipelineVariables(path, pipeline.getId()));
+        } catch (GitLabApiException e) {
+            log.error("Failed to get variables from pipeline " + pipeline.getId(), e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+/*******************************************************************************
+ * Copyright 2017-2023 Open Text.
+ *
+ * The only warranties for products and services of Open Text and
+ * its affiliates and licensors (“Open Text”) are as may be set forth
+ * in the express warranty statements accompanying such products and services.
+ * Nothing herein should be construed as constituting an additional warranty.
+ * Open Text shall not be liable for technical or editorial errors or
+ * omissions contained herein. The information contained herein is subject
+ * to change without notice.
+ *
+ * Except as specifically indicated otherwise, this document contains
+ * confidential information and a valid license is required for possession,
+ * use or copying. If this work is provided to the U.S. Government,
+ * consistent with FAR 12.211 and 12.212, Commercial Computer Software,
+ * Computer Software Documentation, and Technical Data for Commercial Items are
+ * licensed to the U.S. Government under vendor's standard commercial license.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+package com.microfocus.octane.gitlab.helpers;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.gitlab4j.api.GitLabApi;
+import org.gitlab4j.api.GitLabApiException;
+import org.gitlab4j.api.Pager;
+import org.gitlab4j.api.models.AccessLevel;
+import org.gitlab4j.api.models.Project;
+import org.gitlab4j.api.models.ProjectFilter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/*
+ * The projects the integrated user maintains (access level => MAINTAINER), loaded once and then refreshed incrementally
+ * in the background every minute: new projects are read with withIdAfter, changed projects with last_activity_after,
+ * and the known projects a webhook event reports as renamed or invalidates are reloaded one by one (or on their next
+ * lookup). A project a webhook event reports as unknown only brings the next refresh forward (by at most 10 seconds), so
+ * that it is added only if it passes the same membership filter. A full reload, which also drops the projects the user
+ * cannot maintain anymore, takes place once a day.
+ * Projects are looked up by id or by their (case insensitive) path with namespace; lookups never wait for a refresh.
+ */
+@Component
+@Scope("singleton")
+public class ProjectCatalogue {
+
+    private static final Logger log = LogManager.getLogger(ProjectCatalogue.class);
+    private static final int PAGE_SIZE = 100;
+    private static final long REFRESH_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+    //a requested refresh still waits this long, so that the events of an unknown project cannot refresh on every event
+    private static final long REQUESTED_REFRESH_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+    private static final long FULL_REFRESH_INTERVAL = TimeUnit.DAYS.toMillis(1);
+    //last_activity_after is compared with the newest last_activity_at read from GitLab, so no local clock is involved
+    private static final long ACTIVITY_OVERLAP = TimeUnit.MINUTES.toMillis(1);
+
+    private final GitLabApi gitLabApi;
+    private final Map<Long, Project> projectsById = new ConcurrentHashMap<>();
+    private final Map<String, Project> projectsByPath = new ConcurrentHashMap<>();
+    private final Set<Long> changedProjectIds = ConcurrentHashMap.newKeySet();
+    private volatile long lastRefreshTime = 0;
+    private volatile long lastFullRefreshTime = 0;
+    private volatile boolean refreshRequested = false;
+    private final AtomicBoolean requestedRefreshScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService refreshExecutor = Executors.newSingleThreadScheduledExecutor();
+    private long lastProjectId = 0;
+    private long lastActivityTime = 0;
+
+    @Autowired
+    public ProjectCatalogue(GitLabApiWrapper gitLabApiWrapper) {
+        this.gitLabApi = gitLabApiWrapper.getGitLabApi();
+    }
+
+    @PostConstruct
+    private void startRefresh() {
+        refreshExecutor.scheduleWithFixedDelay(this::refreshQuietly, REFRESH_INTERVAL, REFRESH_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    private void stopRefresh() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /*
+     * Returns the maintained projects ordered by id, refreshing the catalogue first when it is due.
+     * Only the first load fails, later refresh failures are logged and the known projects are returned.
+     */
+    public List<Project> getProjects() throws GitLabApiException {
+        refreshIfNeeded();
+        List<Project> projects = new ArrayList<>(projectsById.values());
+        projects.sort(Comparator.comparing(Project::getId));
+        return projects;
+    }
+
+    public Optional<Project> findProject(long projectId) {
+        if (changedProjectIds.remove(projectId)) {
+            reloadProject(projectId);
+        }
+        return Optional.ofNullable(projectsById.get(projectId));
+    }
+
+    /*
+     * A project invalidated since it was loaded is reloaded first, the same as when it is looked up by id.
+     */
+    public Optional<Project> findProject(String pathWithNamespace) {
+        Project project = projectsByPath.get(pathWithNamespace.toLowerCase());
+        if (project != null && changedProjectIds.remove(project.getId())) {
+            reloadProject(project.getId());
+            project = projectsByPath.get(pathWithNamespace.toLowerCase());
+        }
+        return Optional.ofNullable(project);
+    }
+
+    /*
+     * Drop-in replacement of ProjectApi.getProject for an id (number or numeric string) or a path with namespace,
+     * falling back to GitLab for the projects which are not in the catalogue.
+     */
+    public Project getProject(Object projectIdOrPath) throws GitLabApiException {
+        Optional<Project> project;
+        if (projectIdOrPath instanceof Number) {
+            project = findProject(((Number) projectIdOrPath).longValue());
+        } else if (projectIdOrPath.toString().matches("\\d+")) {
+            project = findProject(Long.parseLong(projectIdOrPath.toString()));
+        } else {
+            project = findProject(projectIdOrPath.toString());
+        }
+        return project.isPresent() ? project.get() : gitLabApi.getProjectApi().getProject(projectIdOrPath);
+    }
+
+    /*
+     * Called for every webhook event: a known project whose path has changed is reloaded on its next lookup or with
+     * the next refresh, and a project which is not known yet makes the next lookup of the projects refresh them.
+     */
+    public void hint(long projectId, String pathWithNamespace) {
+        Project project = projectsById.get(projectId);
+        if (project == null) {
+            refreshRequested = true;
+            if (requestedRefreshScheduled.compareAndSet(false, true)) {
+                refreshExecutor.schedule(() -> {
+                    requestedRefreshScheduled.set(false);
+                    refreshQuietly();
+                }, REQUESTED_REFRESH_INTERVAL, TimeUnit.MILLISECONDS);
+            }
+        } else if (pathWithNamespace != null && !pathWithNamespace.equalsIgnoreCase(project.getPathWithNamespace())) {
+            changedProjectIds.add(projectId);
+        }
+    }
+
+    /*
+     * The project is reloaded on its next lookup or with the next refresh, e.g. after a push changed its default branch.
+     */
+    public void invalidate(long projectId) {
+        if (projectsById.containsKey(projectId)) {
+            changedProjectIds.add(projectId);
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            refreshIfNeeded();
+        } catch (GitLabApiException | RuntimeException e) {
+            log.warn("Failed to load the GitLab projects, retrying with the next refresh", e);
+        }
+    }
+
+    private synchronized void refreshIfNeeded() throws GitLabApiException {
+        long now = System.currentTimeMillis();
+        if (lastFullRefreshTime == 0 || now - lastFullRefreshTime > FULL_REFRESH_INTERVAL) {
+            try {
+                loadAll(now);
+            } catch (GitLabApiException | RuntimeException e) {
+                if (lastFullRefreshTime == 0) {
+                    throw e;
+                }
+                log.warn("Failed to reload the GitLab projects, the known projects are used", e);
+            }
+        } else if (now - lastRefreshTime > REFRESH_INTERVAL || !changedProjectIds.isEmpty() ||
+                   (refreshRequested && now - lastRefreshTime > REQUESTED_REFRESH_INTERVAL)) {
+            try {
+                loadChanges(now);
+            } catch (GitLabApiException | RuntimeException e) {
+                log.warn("Failed to refresh the GitLab projects, the known projects are used", e);
+            }
+        }
+    }
+
+    private void loadAll(long now) throws GitLabApiException {
+        Map<Long, Project> projects = new HashMap<>();
+        forEachProject(newFilter(), project -> projects.put(project.getId(), project));
+
+        projectsById.keySet().retainAll(projects.keySet());
+        projectsByPath.values().removeIf(project -> !projects.containsKey(project.getId()));
+        projects.values().forEach(this::putProject);
+        changedProjectIds.clear();
+        refreshRequested = false;
+        lastFullRefreshTime = now;
+        lastRefreshTime = now;
+        log.info("Loaded " + projects.size() + " GitLab projects with access level => MAINTAINER for the integrated user");
+    }
+
+    private void loadChanges(long now) throws GitLabApiException {
+        refreshRequested = false;
+        forEachProject(newFilter().withIdAfter(lastProjectId), this::putProject);
+        if (lastActivityTime > 0) {
+            forEachProject(newFilter().withLastActivityAfter(new Date(lastActivityTime - ACTIVITY_OVERLAP)),
+                    this::putProject);
+        }
+        for (Long projectId : new ArrayList<>(changedProjectIds)) {
+            changedProjectIds.remove(projectId);
+            reloadProject(projectId);
+        }
+        lastRefreshTime = now;
+    }
+
+    /*
+     * Only called for known projects: the project was loaded through the membership filter, and a lost membership is
+     * caught by the daily full reload.
+     */
+    private void reloadProject(long projectId) {
+        if (!projectsById.containsKey(projectId)) {
+            return;
+        }
+        try {
+            putProject(gitLabApi.getProjectApi().getProject(projectId));
+        } catch (GitLabApiException e) {
+            if (e.getHttpStatus() == 404) {
+                removeProject(projectId);
+            } else {
+                log.warn("Failed to reload the GitLab project " + projectId, e);
+            }
+        }
+    }
+
+    private void putProject(Project project) {
+        Project previous = projectsById.put(project.getId(), project);
+        if (previous != null && previous.getPathWithNamespace() != null) {
+            projectsByPath.remove(previous.getPathWithNamespace().toLowerCase(), previous);
+        }
+        if (project.getPathWithNamespace() != null) {
+            projectsByPath.put(project.getPathWithNamespace().toLowerCase(), project);
+        }
+        synchronized (this) {
+            lastProjectId = Math.max(lastProjectId, project.getId());
+            if (project.getLastActivityAt() != null) {
+                lastActivityTime = Math.max(lastActivityTime, project.getLastActivityAt().getTime());
+            }
+        }
+    }
+
+    private void removeProject(long projectId) {
+        Project previous = projectsById.remove(projectId);
+        if (previous != null && previous.getPathWithNamespace() != null) {
+            projectsByPath.remove(previous.getPathWithNamespace().toLowerCase(), previous);
+        }
+    }
+
+    private void forEachProject(ProjectFilter filter, Consumer<Project> consumer)
+            throws GitLabApiException {
+        Pager<Project> pager = gitLabApi.getProjectApi().getProjects(filter, PAGE_SIZE);
+        while (pager.hasNext()) {
+            pager.next().forEach(consumer);
+        }
+    }
+
+    private static ProjectFilter newFilter() {
+        return new ProjectFilter().withMembership(true).withMinAccessLevel(AccessLevel.MAINTAINER);
+    }
+}
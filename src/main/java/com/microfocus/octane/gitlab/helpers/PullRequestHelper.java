@@ -45,12 +45,10 @@ import org.apache.logging.log4j.Logger;
 import org.gitlab4j.api.GitLabApi;
 import org.gitlab4j.api.GitLabApiException;
 import org.gitlab4j.api.models.Commit;
-import org.gitlab4j.api.models.Diff;
 import org.gitlab4j.api.models.MergeRequest;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -92,37 +90,40 @@ public class PullRequestHelper {
                 .setCommits(mergeRequestCommits);
     }
 
-    public static void sendPullRequestToOctane(String repoUrl, PullRequest pullRequest, String destinationWorkspace) {
+    /*
+     * Returns false when the pull requests failed to reach one of the ALM Octane clients.
+     */
+    public static boolean sendPullRequestsToOctane(String repoUrl, List<PullRequest> pullRequests,
+            String destinationWorkspace) {
         PullRequestFetchParameters pullRequestFetchParameters = new PullRequestFetchParameters()
                 .setRepoUrl(repoUrl);
 
+        boolean[] sent = {true};
         OctaneSDK.getClients().forEach(client -> {
             try {
                 client.getPullRequestAndBranchService()
-                        .sendPullRequests(Collections.singletonList(pullRequest), destinationWorkspace,
+                        .sendPullRequests(pullRequests, destinationWorkspace,
                                 pullRequestFetchParameters, log::info);
             } catch (IOException e) {
                 log.error(e.getMessage(), e);
+                sent[0] = false;
             }
         });
+        return sent[0];
     }
 
-    public static void convertAndSendMergeRequestToOctane(MergeRequest mergeRequest, List<Commit> mrCommits, Map<String,
-            List<Diff>> mrCommitDiffs, String repoUrl, String destinationWS) {
+    public static PullRequest convertMergeRequest(MergeRequest mergeRequest, List<SCMCommit> pullRequestCommits,
+            String repoUrl) {
         SCMRepository sourceScmRepository =
                 PullRequestHelper.createGitScmRepository(repoUrl, mergeRequest.getSourceBranch());
         SCMRepository targetScmRepository =
                 PullRequestHelper.createGitScmRepository(repoUrl, mergeRequest.getTargetBranch());
 
-        List<SCMCommit> pullRequestCommits = convertMergeRequestCommits(mrCommits, mrCommitDiffs);
-
-        PullRequest pullRequest = PullRequestHelper.createPullRequest(mergeRequest, sourceScmRepository,
+        return PullRequestHelper.createPullRequest(mergeRequest, sourceScmRepository,
                 targetScmRepository, pullRequestCommits);
-
-        sendPullRequestToOctane(repoUrl, pullRequest, destinationWS);
     }
 
-    public static List<SCMCommit> convertMergeRequestCommits(List<Commit> commits, Map<String, List<Diff>> commitDiffs) {
+    public static List<SCMCommit> convertMergeRequestCommits(List<Commit> commits, Map<String, List<SCMChange>> commitChanges) {
         return commits.stream()
                 .map(commit -> {
                     SCMCommit cm = dtoFactory.newDTO(SCMCommit.class);
@@ -135,18 +136,10 @@ public class PullRequestHelper {
                             : (commit.getParentIds().isEmpty() ? null : commit.getParentIds().get(0)));
                     cm.setComment(commit.getMessage());
 
-                    List<Diff> diffs = commitDiffs.get(commit.getId()) != null
-                            ? commitDiffs.get(commit.getId())
+                    List<SCMChange> changes = commitChanges.get(commit.getId()) != null
+                            ? commitChanges.get(commit.getId())
                             : new ArrayList<>();
 
-                    List<SCMChange> changes = new ArrayList<>();
-                    diffs.forEach(d -> {
-                        SCMChange change = dtoFactory.newDTO(SCMChange.class);
-                        change.setFile(d.getNewPath());
-                        change.setType(d.getNewFile() ? "add" : d.getDeletedFile() ? "delete" : "edit");
-                        changes.add(change);
-                    });
-
                     cm.setChanges(changes);
                     return cm;
                 })
@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright 2017-2023 Open Text.
+ *
+ * The only warranties for products and services of Open Text and
+ * its affiliates and licensors (“Open Text”) are as may be set forth
+ * in the express warranty statements accompanying such products and services.
+ * Nothing herein should be construed as constituting an additional warranty.
+ * Open Text shall not be liable for technical or editorial errors or
+ * omissions contained herein. The information contained herein is subject
+ * to change without notice.
+ *
+ * Except as specifically indicated otherwise, this document contains
+ * confidential information and a valid license is required for possession,
+ * use or copying. If this work is provided to the U.S. Government,
+ * consistent with FAR 12.211 and 12.212, Commercial Computer Software,
+ * Computer Software Documentation, and Technical Data for Commercial Items are
+ * licensed to the U.S. Government under vendor's standard commercial license.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+package com.microfocus.octane.gitlab.helpers;
+
+import com.hp.octane.integrations.dto.scm.PullRequest;
+import com.microfocus.octane.gitlab.app.ApplicationSettings;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Sends the pull requests to ALM Octane in batches: the pull requests of the same repository to the same workspace are
+ * grouped, and a batch is sent once it holds gitlab.mergeRequests.batchSize pull requests, or
+ * gitlab.mergeRequests.batchDelayMillis after its first pull request, whichever comes first.
+ * A full batch is sent by the thread which filled it, so that a history backfill cannot run ahead of the sending.
+ */
+@Component
+@Scope("singleton")
+public class PullRequestPublisher {
+
+    private static final Logger log = LogManager.getLogger(PullRequestPublisher.class);
+
+    private final int batchSize;
+    private final long batchDelayMillis;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final Map<String, Batch> batches = new HashMap<>();
+
+    private static class Batch {
+        private final String repoUrl;
+        private final String destinationWorkspace;
+        private final List<PullRequest> pullRequests = new ArrayList<>();
+        private final List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        private ScheduledFuture<?> scheduledSend;
+
+        private Batch(String repoUrl, String destinationWorkspace) {
+            this.repoUrl = repoUrl;
+            this.destinationWorkspace = destinationWorkspace;
+        }
+    }
+
+    @Autowired
+    public PullRequestPublisher(ApplicationSettings applicationSettings) {
+        this.batchSize = applicationSettings.getConfig().getMergeRequestsBatchSize();
+        this.batchDelayMillis = applicationSettings.getConfig().getMergeRequestsBatchDelayMillis();
+    }
+
+    /*
+     * The returned future completes with false when the batch of the pull request failed to reach ALM Octane.
+     */
+    public CompletableFuture<Boolean> publish(String repoUrl, PullRequest pullRequest, String destinationWorkspace) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        String key = destinationWorkspace + "|" + repoUrl;
+        Batch fullBatch = null;
+        synchronized (batches) {
+            Batch batch = batches.computeIfAbsent(key, k -> {
+                Batch newBatch = new Batch(repoUrl, destinationWorkspace);
+                newBatch.scheduledSend = scheduler.schedule(() -> sendScheduled(k, newBatch), batchDelayMillis,
+                        TimeUnit.MILLISECONDS);
+                return newBatch;
+            });
+            batch.pullRequests.add(pullRequest);
+            batch.results.add(result);
+
+            if (batch.pullRequests.size() >= batchSize) {
+                batches.remove(key);
+                batch.scheduledSend.cancel(false);
+                fullBatch = batch;
+            }
+        }
+        if (fullBatch != null) {
+            send(fullBatch);
+        }
+        return result;
+    }
+
+    @PreDestroy
+    private void stop() {
+        List<Batch> pendingBatches;
+        synchronized (batches) {
+            pendingBatches = new ArrayList<>(batches.values());
+            batches.clear();
+        }
+        pendingBatches.forEach(batch -> {
+            batch.scheduledSend.cancel(false);
+            send(batch);
+        });
+        scheduler.shutdownNow();
+    }
+
+    private void sendScheduled(String key, Batch batch) {
+        synchronized (batches) {
+            if (!batches.remove(key, batch)) {
+                return;
+            }
+        }
+        send(batch);
+    }
+
+    private void send(Batch batch) {
+        boolean sent = false;
+        try {
+            sent = PullRequestHelper.sendPullRequestsToOctane(batch.repoUrl, batch.pullRequests,
+                    batch.destinationWorkspace);
+        } catch (RuntimeException e) {
+            log.error("Failed to send " + batch.pullRequests.size() + " pull requests to Octane", e);
+        }
+        boolean batchSent = sent;
+        batch.results.forEach(result -> result.complete(batchSent));
+    }
+}
@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright 2017-2023 Open Text.
+ *
+ * The only warranties for products and services of Open Text and
+ * its affiliates and licensors (“Open Text”) are as may be set forth
+ * in the express warranty statements accompanying such products and services.
+ * Nothing herein should be construed as constituting an additional warranty.
+ * Open Text shall not be liable for technical or editorial errors or
+ * omissions contained herein. The information contained herein is subject
+ * to change without notice.
+ *
+ * Except as specifically indicated otherwise, this document contains
+ * confidential information and a valid license is required for possession,
+ * use or copying. If this work is provided to the U.S. Government,
+ * consistent with FAR 12.211 and 12.212, Commercial Computer Software,
+ * Computer Software Documentation, and Technical Data for Commercial Items are
+ * licensed to the U.S. Government under vendor's standard commercial license.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+package com.microfocus.octane.gitlab.helpers;
+
+import com.hp.octane.integrations.dto.DTOFactory;
+import com.hp.octane.integrations.dto.scm.SCMChange;
+import com.hp.octane.integrations.dto.scm.SCMCommit;
+import com.microfocus.octane.gitlab.app.ApplicationSettings;
+import org.gitlab4j.api.models.MergeRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/*
+ * Remembers what was last sent to ALM Octane for each merge request: the head commit, the converted commits and the
+ * fields of the pull request ALM Octane cares about. An update event then only reads the commits which are new, and
+ * is not sent at all when nothing that ALM Octane shows has changed (e.g. when only labels or assignees were updated).
+ * At most gitlab.mergeRequests.sentCacheSize merge requests are remembered, the least recently used ones being forgotten.
+ * The commits are kept as immutable copies, as the DTOs handed to the SDK are mutable, and every send gets new DTOs.
+ */
+@Component
+@Scope("singleton")
+public class SentMergeRequests {
+
+    private static final long TIME_TO_LIVE = TimeUnit.DAYS.toMillis(7);
+    private static final DTOFactory dtoFactory = DTOFactory.getInstance();
+
+    private final ExpiringCache<String, SentMergeRequest> sentMergeRequests;
+
+    public static class SentMergeRequest {
+        private final String headSha;
+        private final List<Object> fingerprint;
+        private final List<SentCommit> commits;
+
+        private SentMergeRequest(String headSha, List<Object> fingerprint, List<SentCommit> commits) {
+            this.headSha = headSha;
+            this.fingerprint = fingerprint;
+            this.commits = commits;
+        }
+
+        public String getHeadSha() {
+            return headSha;
+        }
+
+        /*
+         * New DTOs on every call, which the caller may hand to the SDK.
+         */
+        public List<SCMCommit> getCommits() {
+            return commits.stream().map(SentCommit::toScmCommit).collect(Collectors.toList());
+        }
+
+        public boolean isSameAs(MergeRequest mergeRequest, String repoUrl, String destinationWorkspace) {
+            return Objects.equals(headSha, mergeRequest.getSha()) &&
+                   fingerprint.equals(getFingerprint(mergeRequest, repoUrl, destinationWorkspace));
+        }
+    }
+
+    private static class SentCommit {
+        private final Long time;
+        private final String user;
+        private final String userEmail;
+        private final String revId;
+        private final String parentRevId;
+        private final String comment;
+        /* change type to file */
+        private final List<Map.Entry<String, String>> changes;
+
+        private SentCommit(SCMCommit commit) {
+            this.time = commit.getTime();
+            this.user = commit.getUser();
+            this.userEmail = commit.getUserEmail();
+            this.revId = commit.getRevId();
+            this.parentRevId = commit.getParentRevId();
+            this.comment = commit.getComment();
+            this.changes = commit.getChanges() == null ? Collections.emptyList() : commit.getChanges().stream()
+                    .map(change -> new AbstractMap.SimpleImmutableEntry<>(change.getType(), change.getFile()))
+                    .collect(Collectors.toUnmodifiableList());
+        }
+
+        private SCMCommit toScmCommit() {
+            SCMCommit commit = dtoFactory.newDTO(SCMCommit.class);
+            commit.setTime(time);
+            commit.setUser(user);
+            commit.setUserEmail(userEmail);
+            commit.setRevId(revId);
+            commit.setParentRevId(parentRevId);
+            commit.setComment(comment);
+            commit.setChanges(changes.stream().map(change -> {
+                SCMChange scmChange = dtoFactory.newDTO(SCMChange.class);
+                scmChange.setType(change.getKey());
+                scmChange.setFile(change.getValue());
+                return scmChange;
+            }).collect(Collectors.toList()));
+            return commit;
+        }
+    }
+
+    @Autowired
+    public SentMergeRequests(ApplicationSettings applicationSettings) {
+        this.sentMergeRequests = new ExpiringCache<>(TIME_TO_LIVE, applicationSettings.getConfig().getMergeRequestsSentCacheSize());
+    }
+
+    /*
+     * Returns null when the merge request was not sent since the service started, or not recently.
+     */
+    public SentMergeRequest get(long projectId, long mergeRequestIid) {
+        return sentMergeRequests.get(getKey(projectId, mergeRequestIid));
+    }
+
+    public void put(long projectId, MergeRequest mergeRequest, String repoUrl, String destinationWorkspace,
+            List<SCMCommit> commits) {
+        sentMergeRequests.put(getKey(projectId, mergeRequest.getIid()), new SentMergeRequest(mergeRequest.getSha(),
+                getFingerprint(mergeRequest, repoUrl, destinationWorkspace),
+                commits.stream().map(SentCommit::new).collect(Collectors.toUnmodifiableList())));
+    }
+
+    /*
+     * The fields sent by PullRequestHelper.createPullRequest, except the update time, which also changes with
+     * the labels, the assignees, etc.
+     */
+    private static List<Object> getFingerprint(MergeRequest mergeRequest, String repoUrl, String destinationWorkspace) {
+        return Arrays.asList(repoUrl, destinationWorkspace, mergeRequest.getTitle(), mergeRequest.getDescription(),
+                mergeRequest.getState(), mergeRequest.getSourceBranch(), mergeRequest.getTargetBranch(),
+                mergeRequest.getCreatedAt(), mergeRequest.getMergedAt(), mergeRequest.getClosedAt(),
+                mergeRequest.getAuthor() != null ? mergeRequest.getAuthor().getName() : null,
+                mergeRequest.getAuthor() != null ? mergeRequest.getAuthor().getEmail() : null,
+                mergeRequest.getWebUrl());
+    }
+
+    private static String getKey(long projectId, long mergeRequestIid) {
+        return projectId + "#" + mergeRequestIid;
+    }
+}
@@ -34,17 +34,21 @@ import com.hp.octane.integrations.utils.SdkConstants;
 import com.hp.octane.integrations.utils.SdkStringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.apache.poi.util.IOUtils;
+import org.gitlab4j.api.GitLabApi;
+import org.gitlab4j.api.GitLabApiException;
 import org.gitlab4j.api.models.Job;
 import org.gitlab4j.api.models.Project;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystems;
-import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -76,100 +80,138 @@ public class TestResultsHelper {
     public static void pushTestResultsKey(Project project,Job job) {
 
         OctaneSDK.getClients().forEach(client ->
-                client.getTestsService().enqueuePushTestsResult(project.getPathWithNamespace().toLowerCase() + "/" + job.getName(), job.getId().toString(), null));
+                client.getTestsService().enqueuePushTestsResult(getOctaneJobId(project, job), job.getId().toString(), null));
 
     }
 
-    public static List<File> extractArtifactsToFiles(InputStream inputStream, String testResultsFilePattern) {
-        PathMatcher matcher = FileSystems.getDefault()
-                .getPathMatcher(testResultsFilePattern); //applicationSettings.getConfig().getGitlabTestResultsFilePattern());
-        File tempFile = null;
-        try {
-            tempFile = File.createTempFile("gitlab-artifact", ".zip");
+    /**
+     * The job id the test results of a GitLab job are pushed with, and later requested by the SDK with.
+     */
+    public static String getOctaneJobId(Project project, Job job) {
+        return project.getPathWithNamespace().toLowerCase() + "/" + job.getName();
+    }
 
-            try (OutputStream os = new FileOutputStream(tempFile)) {
-                StreamHelper.copyStream(inputStream, os);
-            }
+    /**
+     * Downloads the artifacts of a job into a temporary zip file, so that all the consumers of the artifacts
+     * (code coverage, Gherkin and JUnit test results) can share a single download.
+     * The caller is responsible for deleting the returned file.
+     */
+    public static File downloadArtifacts(GitLabApi gitLabApi, long projectId, long jobId) throws GitLabApiException, IOException {
+        return spoolArtifacts(gitLabApi.getJobApi().downloadArtifactsFile(projectId, jobId));
+    }
 
-            inputStream.close();
+    private static File spoolArtifacts(InputStream inputStream) throws IOException {
+        File tempFile = File.createTempFile("gitlab-artifact-" + UUID.randomUUID(), ".zip");
+        try (InputStream is = inputStream; OutputStream os = new FileOutputStream(tempFile)) {
+            StreamHelper.copyStream(is, os);
+        } catch (IOException e) {
+            tempFile.delete();
+            throw e;
+        }
+        return tempFile;
+    }
 
-            ZipFile zipFile = new ZipFile(tempFile);
+    public interface ArtifactEntryHandler {
+        void handle(ArtifactEntry entry, List<String> matchedFilePatterns) throws IOException;
+    }
 
-            List<File> result = new LinkedList<>();
-            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+    /**
+     * Scans the artifacts zip once and hands every entry matching at least one of the given patterns to the handler.
+     * The entries are streamed from the zip, so the memory usage does not depend on the size of the entries.
+     */
+    public static void forEachArtifactEntry(File artifactsFile, Collection<String> filePatterns, ArtifactEntryHandler handler) throws IOException {
+        try (ZipFile zipFile = new ZipFile(artifactsFile)) {
+            forEachArtifactEntry(zipFile, filePatterns, handler);
+        }
+    }
 
-            while (entries.hasMoreElements()) {
-                ZipEntry entry = entries.nextElement();
+    public interface ArtifactEntryMapper<T> {
+        T map(ArtifactEntry entry) throws IOException;
+    }
 
-                if (matcher.matches(Paths.get(entry.getName()))) {
-                    ByteArrayOutputStream entryStream = new ByteArrayOutputStream();
-                    try (InputStream zipEntryStream = zipFile.getInputStream(entry)) {
-                        StreamHelper.copyStream(zipEntryStream, entryStream);
+    /**
+     * Same as {@link #forEachArtifactEntry(File, Collection, ArtifactEntryHandler)}, but every matching entry is mapped by a
+     * separate task of the given pool. The mapped entries are handed to the consumer in the order of the entries in the zip,
+     * and at most two tasks per pool thread are in flight, so that the mapped entries do not pile up in memory.
+     */
+    public static <T> void forEachMappedArtifactEntry(File artifactsFile, Collection<String> filePatterns, ArtifactEntryMapper<T> mapper,
+                                                      ForkJoinPool pool, Consumer<T> consumer) throws IOException {
+        int maxTasksInFlight = pool.getParallelism() * 2;
+        Deque<ForkJoinTask<T>> tasks = new ArrayDeque<>();
+        try (ZipFile zipFile = new ZipFile(artifactsFile)) {
+            try {
+                forEachArtifactEntry(zipFile, filePatterns, (entry, matchedFilePatterns) -> {
+                    if (tasks.size() >= maxTasksInFlight) {
+                        consumer.accept(tasks.poll().join());
                     }
-
-                    File tempResultFile = File.createTempFile(entry.getName(),".xml");
-                    ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(entryStream.toByteArray());
-                    String encoding = EncodingHelper.detectCharset(byteArrayInputStream);
-                    String xml = entryStream.toString(encoding == null ? StandardCharsets.UTF_8.name() : encoding);
-                    xml = xml.trim().replaceFirst("^([\\W]+)<", "<");
-                    Files.write(tempResultFile.toPath(), xml.getBytes(encoding == null ? StandardCharsets.UTF_8.name() : encoding));
-                    result.add(tempResultFile);
+                    tasks.add(pool.submit(() -> mapper.map(entry)));
+                });
+                while (!tasks.isEmpty()) {
+                    consumer.accept(tasks.poll().join());
                 }
-            }
-            return result;
-        } catch (IOException e) {
-            log.warn("Failed to extract the real artifacts, using null as default.", e);
-            return null;
-        } finally {
-            if (tempFile != null) {
-                tempFile.delete();
+            } finally {
+                //the tasks read from the zip, which must stay open until they are all done. A running task cannot be
+                //cancelled (cancel() only marks it as done), so every task is waited for, not cancelled
+                tasks.forEach(ForkJoinTask::quietlyJoin);
             }
         }
     }
 
-    public static List<Map.Entry<String, String>> extractArtifacts(InputStream inputStream, String testResultsFilePattern) {
-        PathMatcher matcher = FileSystems.getDefault()
-                .getPathMatcher(testResultsFilePattern);
-        File tempFile = null;
-        try {
-            tempFile = File.createTempFile("gitlab-artifact-" + UUID.randomUUID(), ".zip");
-
-            try (OutputStream os = new FileOutputStream(tempFile)) {
-                StreamHelper.copyStream(inputStream, os);
+    private static void forEachArtifactEntry(ZipFile zipFile, Collection<String> filePatterns, ArtifactEntryHandler handler) throws IOException {
+        Map<String, PathMatcher> matchers = new LinkedHashMap<>();
+        filePatterns.forEach(pattern -> matchers.put(pattern, FileSystems.getDefault().getPathMatcher(pattern)));
+
+        Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            Path entryPath = Paths.get(entry.getName());
+            List<String> matchedFilePatterns = matchers.entrySet().stream()
+                    .filter(matcher -> matcher.getValue().matches(entryPath))
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+
+            if (!matchedFilePatterns.isEmpty()) {
+                handler.handle(new ArtifactEntry(zipFile, entry), matchedFilePatterns);
             }
+        }
+    }
 
-            inputStream.close();
-
-            ZipFile zipFile = new ZipFile(tempFile);
-
-            List<Map.Entry<String, String>> result = new LinkedList<>();
-            Enumeration<? extends ZipEntry> entries = zipFile.entries();
-
-            while (entries.hasMoreElements()) {
-                ZipEntry entry = entries.nextElement();
+    /**
+     * Extracts the entries matching any of the given patterns in a single pass over the artifacts zip.
+     * An entry matching several patterns is extracted only once and its file is shared between the patterns.
+     * @return the extracted files, by pattern. Every given pattern has a (possibly empty) list.
+     */
+    public static Map<String, List<File>> extractArtifactsToFiles(File artifactsFile, Collection<String> filePatterns) throws IOException {
+        Map<String, List<File>> result = new HashMap<>();
+        filePatterns.forEach(pattern -> result.put(pattern, new LinkedList<>()));
 
-                if (matcher.matches(Paths.get(entry.getName()))) {
-                    ByteArrayOutputStream entryStream = new ByteArrayOutputStream();
+        try {
+            forEachArtifactEntry(artifactsFile, filePatterns, (entry, matchedFilePatterns) -> {
+                File extractedFile = extractEntryToFile(entry);
+                matchedFilePatterns.forEach(pattern -> result.get(pattern).add(extractedFile));
+            });
+        } catch (IOException e) {
+            deleteFiles(result);
+            throw e;
+        }
+        return result;
+    }
 
-                    try (InputStream zipEntryStream = zipFile.getInputStream(entry)) {
-                        StreamHelper.copyStream(zipEntryStream, entryStream);
-                    }
-                    ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(entryStream.toByteArray());
-                    String encoding = EncodingHelper.detectCharset(byteArrayInputStream);
-                    String xml = entryStream.toString(encoding != null ? encoding : StandardCharsets.UTF_8.name());
-                    xml = xml.trim().replaceFirst("^([\\W]+)<", "<");
-                    result.add(Pair.of(entry.getName(), xml));
-                }
-            }
-            return result;
+    private static File extractEntryToFile(ArtifactEntry entry) throws IOException {
+        //entry names may contain folders, which are not allowed in a temp file prefix
+        String entryFileName = Paths.get(entry.getName()).getFileName().toString();
+        File tempResultFile = File.createTempFile(entryFileName.length() < 3 ? "gitlab-" + entryFileName : entryFileName, ".xml");
+        try {
+            entry.copyTo(tempResultFile);
         } catch (IOException e) {
-            log.warn("Failed to extract the real artifacts, using null as default.", e);
-            return null;
-        } finally {
-            if (tempFile != null) {
-                tempFile.delete();
-            }
+            tempResultFile.delete();
+            throw e;
         }
+        return tempResultFile;
+    }
+
+    public static void deleteFiles(Map<String, List<File>> extractedFiles) {
+        extractedFiles.values().stream().flatMap(Collection::stream).distinct().forEach(File::delete);
     }
 
 }
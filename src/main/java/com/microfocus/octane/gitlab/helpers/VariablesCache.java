@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright 2017-2023 Open Text.
+ *
+ * The only warranties for products and services of Open Text and
+ * its affiliates and licensors (“Open Text”) are as may be set forth
+ * in the express warranty statements accompanying such products and services.
+ * Nothing herein should be construed as constituting an additional warranty.
+ * Open Text shall not be liable for technical or editorial errors or
+ * omissions contained herein. The information contained herein is subject
+ * to change without notice.
+ *
+ * Except as specifically indicated otherwise, this document contains
+ * confidential information and a valid license is required for possession,
+ * use or copying. If this work is provided to the U.S. Government,
+ * consistent with FAR 12.211 and 12.212, Commercial Computer Software,
+ * Computer Software Documentation, and Technical Data for Commercial Items are
+ * licensed to the U.S. Government under vendor's standard commercial license.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.microfocus.octane.gitlab.helpers;
+
+import com.microfocus.octane.gitlab.app.ApplicationSettings;
+import com.microfocus.octane.gitlab.model.ConfigStructure;
+import org.gitlab4j.api.GitLabApi;
+import org.gitlab4j.api.models.Project;
+import org.gitlab4j.api.models.Variable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Caches the project and group CI variables the service reads on every merge request event and while scanning projects,
+ * and the project, group and instance variables reported as pipeline parameters of every project.
+ * All the variables of a project are loaded at once, and every group is loaded once for all its projects.
+ * Entries expire after gitlab.variables.cache.ttlSeconds, and the variables of a project (and of its groups) are dropped
+ * whenever a pipeline of the project starts, as this is when changed variables take effect.
+ */
+@Component
+@Scope("singleton")
+public class VariablesCache {
+
+    private static final int MAX_SIZE = 10000;
+    private static final String INSTANCE = "instance";
+
+    private final GitLabApi gitLabApi;
+    private final GitLabAPiClientImpl gitLabApiClient;
+    private final ConfigStructure config;
+    private final ExpiringCache<Long, Map<String, String>> projectVariables;
+    private final ExpiringCache<String, List<Variable>> groupVariables;
+    private final ExpiringCache<String, List<Variable>> instanceVariables;
+
+    @Autowired
+    public VariablesCache(ApplicationSettings applicationSettings, GitLabApiWrapper gitLabApiWrapper) {
+        this.gitLabApi = gitLabApiWrapper.getGitLabApi();
+        this.gitLabApiClient = gitLabApiWrapper.getGitLabApiClient();
+        this.config = applicationSettings.getConfig();
+        long timeToLive = TimeUnit.SECONDS.toMillis(config.getVariablesCacheTtlSeconds());
+        this.projectVariables = new ExpiringCache<>(timeToLive, MAX_SIZE);
+        this.groupVariables = new ExpiringCache<>(timeToLive, MAX_SIZE);
+        this.instanceVariables = new ExpiringCache<>(timeToLive, 1);
+    }
+
+    public ProjectVariables getProjectVariables(Project project) {
+        return new ProjectVariables(getProjectVariables(project.getId()), getProjectGroupVariables(project));
+    }
+
+    /*
+     * All the variables of the project by key, empty when they could not be read.
+     */
+    public Map<String, String> getProjectVariables(long projectId) {
+        //a failed load is not cached, so that it is retried on the next lookup
+        Map<String, String> variablesOnProject = projectVariables.getOrLoad(projectId,
+                () -> VariablesHelper.getProjectVariables(gitLabApi, projectId));
+        return variablesOnProject != null ? variablesOnProject : Collections.emptyMap();
+    }
+
+    /*
+     * The instance variables are the same for all the projects, so they are read at most once per time to live,
+     * however many projects are listed.
+     */
+    public List<Variable> getInstanceVariables() {
+        return instanceVariables.getOrLoad(INSTANCE, gitLabApiClient::getInstanceVariables);
+    }
+
+    private Map<String, String> getProjectGroupVariables(Project project) {
+        Map<String, String> variablesKeyValuePairs = new HashMap<>();
+
+        if (VariablesHelper.isGroupVariablesUsed(config)) {
+            ParsedPath.getGroupFullPathFromProject(project.getPathWithNamespace()).forEach(group ->
+                    getGroupVariables(group).forEach(variable -> variablesKeyValuePairs.put(variable.getKey(), variable.getValue())));
+        }
+        return variablesKeyValuePairs;
+    }
+
+    public List<Variable> getGroupVariables(String group) {
+        //same as for the projects, a failed load is not cached
+        List<Variable> variablesOnGroup = groupVariables.getOrLoad(group, () -> VariablesHelper.getGroupVariables(gitLabApi, group));
+        return variablesOnGroup != null ? variablesOnGroup : Collections.emptyList();
+    }
+
+    public void invalidateProject(long projectId, String pathWithNamespace) {
+        projectVariables.invalidate(projectId);
+        ParsedPath.getGroupFullPathFromProject(pathWithNamespace).forEach(groupVariables::invalidate);
+    }
+}
@@ -38,16 +38,15 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.gitlab4j.api.GitLabApi;
 import org.gitlab4j.api.GitLabApiException;
-import org.gitlab4j.api.models.Project;
 import org.gitlab4j.api.models.Variable;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
 public final class VariablesHelper {
 
@@ -87,52 +86,36 @@ public final class VariablesHelper {
         return variables;
     }
 
-    public static List<Variable> getVariables(ParsedPath project, GitLabApi gitLabApi, ConfigStructure appConfig){
+    /*
+     * The variables of the levels set in gitlab.variables.pipeline.usage, read through the variables cache, so that listing
+     * the parameters of many projects does not read the variables of their common groups again and again.
+     */
+    public static List<Variable> getVariables(ParsedPath project, ConfigStructure appConfig, VariablesCache variablesCache){
         List<Variable> variables = new ArrayList<>();
         if(project == null || project.getFullPathOfProject() == null){
             return variables;
         }
-        try{
-            List<String> variablesUsage = appConfig.getGitlabVariablesPipelineUsage();
-            log.info("getting all defined variables from levels: "+variablesUsage.toString() + ", on project: "+ project.getPathWithNameSpace()) ;
-
-            if(variablesUsage.isEmpty() || variablesUsage.contains(VARS_ON_PROJECT) ){
-                List<Variable> variablesOnProject = gitLabApi.getProjectApi().getVariables(project.getPathWithNameSpace());
-                variables.addAll(variablesOnProject);
-            }
-
-            if(variablesUsage.contains(VARS_ON_GROUPS)){
-                List<String> groupsFullPath = ParsedPath.getGroupFullPathFromProject(project.getPathWithNameSpace());
-                for(String group :groupsFullPath){
-                    try {
-                        List<Variable> variablesOnGroup = gitLabApi.getGroupApi().getVariables(group);
-                        if(variablesOnGroup.isEmpty()){
-                            if (log.isDebugEnabled()) {
-                                log.warn("can not find variables for the group:" + group);
-                            }
-                        }
-                        variables.addAll(variablesOnGroup);
-                    }catch (GitLabApiException e){
-                        if (log.isDebugEnabled()) {
-                            log.warn("can not find variables for the group:" + group);
-                        }
-                    }
-                }
-
-            }
-
-            if(variablesUsage.contains(VARS_ON_INSTANCE)){//supported only from gitlab 13
-                GitLabAPiClientImpl apiClient = new GitLabAPiClientImpl(appConfig.getGitlabLocation(), appConfig.getGitlabPersonalAccessToken());
+        List<String> variablesUsage = appConfig.getGitlabVariablesPipelineUsage();
+        log.info("getting all defined variables from levels: "+variablesUsage.toString() + ", on project: "+ project.getPathWithNameSpace()) ;
+
+        if(variablesUsage.isEmpty() || variablesUsage.contains(VARS_ON_PROJECT) ){
+            variablesCache.getProjectVariables(project.getId()).forEach((key, value) -> {
+                Variable variable = new Variable();
+                variable.setKey(key);
+                variable.setValue(value);
+                variables.add(variable);
+            });
+        }
 
-                List<Variable> variablesOnInstance =  apiClient.getInstanceVariables();
-                variables.addAll(variablesOnInstance);
-            }
+        if(variablesUsage.contains(VARS_ON_GROUPS)){
+            ParsedPath.getGroupFullPathFromProject(project.getPathWithNameSpace())
+                    .forEach(group -> variables.addAll(variablesCache.getGroupVariables(group)));
+        }
 
-        } catch (GitLabApiException e){
-            log.error("can not find variables for the project:"+project.getDisplayName());
-        } finally {
-            return variables;
+        if(variablesUsage.contains(VARS_ON_INSTANCE)){//supported only from gitlab 13
+            variables.addAll(variablesCache.getInstanceVariables());
         }
+        return variables;
     }
 
     public static List<Variable> convertJSONArrayToVariables(JSONArray jsonVariablesList) {
@@ -147,39 +130,48 @@ public final class VariablesHelper {
         return variableList;
     }
 
-    public static Optional<Variable> getProjectVariable(GitLabApi gitLabApi, long projectId, String variableName) {
-        Variable variable = null;
+    /**
+     * Loads all the variables of a project, a page of 100 variables per call.
+     * When a variable is defined for several environment scopes, the value of the '*' scope is used.
+     * @return the variable values by key, null if the variables could not be obtained
+     */
+    public static Map<String, String> getProjectVariables(GitLabApi gitLabApi, long projectId) {
+        Map<String, String> variablesKeyValuePairs = new LinkedHashMap<>();
         try {
-            variable = gitLabApi.getProjectApi().getVariable(projectId, variableName);
+            gitLabApi.getProjectApi().getVariables(projectId, 100).all().forEach(variable -> {
+                if (!variablesKeyValuePairs.containsKey(variable.getKey()) || "*".equals(variable.getEnvironmentScope())) {
+                    variablesKeyValuePairs.put(variable.getKey(), variable.getValue());
+                }
+            });
         } catch (GitLabApiException apiException) {
-            if(log.isDebugEnabled()){log.warn("Variable " + variableName + " could not be obtained for project with id " + projectId + ". " +
+            if(log.isDebugEnabled()){log.warn("Variables could not be obtained for project with id " + projectId + ". " +
                     apiException.getMessage());}
+            return null;
         }
-
-        return Optional.ofNullable(variable);
+        return variablesKeyValuePairs;
     }
 
-    public static Map<String, String> getProjectGroupVariables(GitLabApi gitLabApi, Project project, ConfigStructure appConfig) {
-        Map<String, String> variablesKeyValuePairs = new HashMap<>();
-
-        if(appConfig.getGitlabVariablesPipelineUsage().contains(VARS_ON_GROUPS)) {
-            List<String> groupsFullPath = ParsedPath.getGroupFullPathFromProject(project.getPathWithNamespace());
-            groupsFullPath.forEach(group -> {
-                try {
-                    List<Variable> variablesOnGroup = gitLabApi.getGroupApi().getVariables(group);
-                    if(variablesOnGroup.isEmpty()){
-                        if (log.isDebugEnabled()) {
-                            log.warn("can not find variables for the group:" + group);
-                        }
-                    }
-                    variablesOnGroup.forEach(variable -> variablesKeyValuePairs.put(variable.getKey(), variable.getValue()));
-                } catch (GitLabApiException e) {
-                        if (log.isDebugEnabled()) {
-                            log.warn("can not find variables for the group:" + group);
-                        }
+    /**
+     * @return the variables of the group, null if they could not be obtained
+     */
+    public static List<Variable> getGroupVariables(GitLabApi gitLabApi, String group) {
+        try {
+            List<Variable> variablesOnGroup = gitLabApi.getGroupApi().getVariables(group);
+            if(variablesOnGroup.isEmpty()){
+                if (log.isDebugEnabled()) {
+                    log.warn("can not find variables for the group:" + group);
                 }
-            });
+            }
+            return variablesOnGroup;
+        } catch (GitLabApiException e) {
+            if (log.isDebugEnabled()) {
+                log.warn("can not find variables for the group:" + group);
+            }
+            return null;
         }
-        return variablesKeyValuePairs;
+    }
+
+    public static boolean isGroupVariablesUsed(ConfigStructure appConfig) {
+        return appConfig.getGitlabVariablesPipelineUsage().contains(VARS_ON_GROUPS);
     }
 }
@@ -124,6 +124,69 @@ public class ConfigStructure {
     @Value("${gitlab.codeCoverage.variables.generatedCoverageReportFilePathVarName:jacocoReportPath}")
     private String generatedCoverageReportFilePathVariableName;
 
+    @Value("${gitlab.events.queue.capacity:1000}")
+    private int eventsQueueCapacity;
+
+    @Value("${gitlab.events.queue.workers:0}")
+    private int eventsQueueWorkers;
+
+    @Value("${gitlab.events.queue.overflowPolicy:REJECT}")
+    private String eventsQueueOverflowPolicy;
+
+    @Value("${gitlab.testResults.parsingParallelism:0}")
+    private int testResultsParsingParallelism;
+
+    @Value("${gitlab.variables.cache.ttlSeconds:300}")
+    private long variablesCacheTtlSeconds;
+
+    @Value("${gitlab.jobList.parallelism:8}")
+    private int jobListParallelism;
+
+    @Value("${gitlab.jobList.timeoutSeconds:120}")
+    private long jobListTimeoutSeconds;
+
+    @Value("${gitlab.jobList.requestsPerSecond:10}")
+    private double jobListRequestsPerSecond;
+
+    @Value("${gitlab.branchesList.maxResults:1000}")
+    private int branchesListMaxResults;
+
+    @Value("${gitlab.pipelines.scanWindow:100}")
+    private int pipelinesScanWindow;
+
+    @Value("${gitlab.pipelines.scanParallelism:4}")
+    private int pipelinesScanParallelism;
+
+    @Value("${gitlab.scm.diffParallelism:8}")
+    private int scmDiffParallelism;
+
+    @Value("${gitlab.scm.diffRequestsPerSecond:20}")
+    private double scmDiffRequestsPerSecond;
+
+    @Value("${gitlab.scm.diffCacheSize:10000}")
+    private int scmDiffCacheSize;
+
+    @Value("${gitlab.scm.diffCacheFolderPath:}")
+    private String scmDiffCacheFolderPath;
+
+    @Value("${gitlab.mergeRequests.batchSize:100}")
+    private int mergeRequestsBatchSize;
+
+    @Value("${gitlab.mergeRequests.batchDelayMillis:1000}")
+    private long mergeRequestsBatchDelayMillis;
+
+    @Value("${gitlab.mergeRequests.backfillParallelism:2}")
+    private int mergeRequestsBackfillParallelism;
+
+    @Value("${gitlab.mergeRequests.backfillWorkersPerProject:4}")
+    private int mergeRequestsBackfillWorkersPerProject;
+
+    @Value("${gitlab.mergeRequests.syncIntervalMinutes:60}")
+    private long mergeRequestsSyncIntervalMinutes;
+
+    @Value("${gitlab.mergeRequests.sentCacheSize:10000}")
+    private int mergeRequestsSentCacheSize;
+
     @PostConstruct
     public void init() {
         List<Map.Entry<String, Supplier<String>>> mandatoryGetters = new ArrayList<>();
@@ -242,4 +305,105 @@ public class ConfigStructure {
     public String getGeneratedCoverageReportFilePathVariableName() {
         return generatedCoverageReportFilePathVariableName;
     }
+
+    public int getEventsQueueCapacity() {
+        return eventsQueueCapacity;
+    }
+
+    /**
+     * Returns the number of threads handling the queued GitLab events, by default - one per available processor.
+     * @return the number of events queue workers
+     */
+    public int getEventsQueueWorkers() {
+        return eventsQueueWorkers > 0 ? eventsQueueWorkers : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Returns what should happen to an incoming GitLab event when the events queue is full.
+     * Unknown values fall back to {@link QueueOverflowPolicy#REJECT}, which lets GitLab retry the delivery later.
+     * @return the configured overflow policy of the events queue
+     */
+    public QueueOverflowPolicy getEventsQueueOverflowPolicy() {
+        try {
+            return QueueOverflowPolicy.valueOf(eventsQueueOverflowPolicy.trim().toUpperCase());
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return QueueOverflowPolicy.REJECT;
+        }
+    }
+
+    /**
+     * Returns the number of test result files of a job artifact that are parsed in parallel, by default - one per available processor.
+     * @return the test results parsing parallelism, 1 means that the files are parsed one after the other
+     */
+    public int getTestResultsParsingParallelism() {
+        return testResultsParsingParallelism > 0 ? testResultsParsingParallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    public long getVariablesCacheTtlSeconds() {
+        return variablesCacheTtlSeconds;
+    }
+
+    public int getJobListParallelism() {
+        return jobListParallelism > 0 ? jobListParallelism : 1;
+    }
+
+    public long getJobListTimeoutSeconds() {
+        return jobListTimeoutSeconds;
+    }
+
+    public double getJobListRequestsPerSecond() {
+        return jobListRequestsPerSecond;
+    }
+
+    public int getBranchesListMaxResults() {
+        return branchesListMaxResults > 0 ? branchesListMaxResults : 1;
+    }
+
+    public int getPipelinesScanWindow() {
+        return pipelinesScanWindow > 0 ? pipelinesScanWindow : 1;
+    }
+
+    public int getPipelinesScanParallelism() {
+        return pipelinesScanParallelism > 0 ? pipelinesScanParallelism : 1;
+    }
+
+    public int getScmDiffParallelism() {
+        return scmDiffParallelism > 0 ? scmDiffParallelism : 1;
+    }
+
+    public double getScmDiffRequestsPerSecond() {
+        return scmDiffRequestsPerSecond;
+    }
+
+    public int getScmDiffCacheSize() {
+        return scmDiffCacheSize > 0 ? scmDiffCacheSize : 1;
+    }
+
+    public String getScmDiffCacheFolderPath() {
+        return scmDiffCacheFolderPath;
+    }
+
+    public int getMergeRequestsBatchSize() {
+        return mergeRequestsBatchSize > 0 ? mergeRequestsBatchSize : 1;
+    }
+
+    public long getMergeRequestsBatchDelayMillis() {
+        return Math.max(mergeRequestsBatchDelayMillis, 0);
+    }
+
+    public int getMergeRequestsBackfillParallelism() {
+        return mergeRequestsBackfillParallelism > 0 ? mergeRequestsBackfillParallelism : 1;
+    }
+
+    public int getMergeRequestsBackfillWorkersPerProject() {
+        return mergeRequestsBackfillWorkersPerProject > 0 ? mergeRequestsBackfillWorkersPerProject : 1;
+    }
+
+    public long getMergeRequestsSyncIntervalMinutes() {
+        return Math.max(mergeRequestsSyncIntervalMinutes, 0);
+    }
+
+    public int getMergeRequestsSentCacheSize() {
+        return mergeRequestsSentCacheSize > 0 ? mergeRequestsSentCacheSize : 1;
+    }
 }
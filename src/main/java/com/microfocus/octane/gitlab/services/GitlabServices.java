@@ -39,7 +39,11 @@ import com.microfocus.octane.gitlab.app.ApplicationSettings;
 import com.microfocus.octane.gitlab.helpers.GitLabApiWrapper;
 import com.microfocus.octane.gitlab.helpers.HooksHelper;
 import com.microfocus.octane.gitlab.helpers.ParsedPath;
+import com.microfocus.octane.gitlab.helpers.ParsedPathResolver;
 import com.microfocus.octane.gitlab.helpers.PathType;
+import com.microfocus.octane.gitlab.helpers.ProjectCatalogue;
+import com.microfocus.octane.gitlab.helpers.RateLimiter;
+import com.microfocus.octane.gitlab.helpers.VariablesCache;
 import com.microfocus.octane.gitlab.helpers.VariablesHelper;
 import com.microfocus.octane.gitlab.testresults.HooksUpdateRunnable;
 import com.microfocus.octane.gitlab.testresults.TestResultsCleanUpRunnable;
@@ -53,9 +57,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.gitlab4j.api.GitLabApi;
 import org.gitlab4j.api.GitLabApiException;
-import org.gitlab4j.api.models.AccessLevel;
 import org.gitlab4j.api.models.Project;
-import org.gitlab4j.api.models.ProjectFilter;
 import org.gitlab4j.api.models.Variable;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.ApplicationArguments;
@@ -70,10 +72,15 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Component
 @Scope("singleton")
@@ -82,21 +89,32 @@ public class GitlabServices {
     private static final DTOFactory               dtoFactory  = DTOFactory.getInstance();
     private final        ApplicationSettings      applicationSettings;
     private final        GitLabApiWrapper         gitLabApiWrapper;
+    private final        VariablesCache           variablesCache;
+    private final        ProjectCatalogue         projectCatalogue;
+    private final        ParsedPathResolver       parsedPathResolver;
     private              GitLabApi                gitLabApi;
     private              boolean                  cleanupOnly = false;
     private              ScheduledExecutorService testCleanupExecutor;
     private              ScheduledFuture<?>       testCleanupScheduledFuture;
     private              ScheduledExecutorService updateHooksExecutor;
     private              ScheduledFuture<?>       updateHooksScheduledFuture;
+    private final        ExecutorService          jobListExecutor;
+    private final        RateLimiter              jobListRateLimiter;
 
 
     private URL webhookURL;
 
     @Autowired
     public GitlabServices(ApplicationSettings applicationSettings, GitLabApiWrapper gitLabApiWrapper,
-            ApplicationArguments applicationArguments) {
+            ApplicationArguments applicationArguments, VariablesCache variablesCache, ProjectCatalogue projectCatalogue,
+            ParsedPathResolver parsedPathResolver) {
         this.applicationSettings = applicationSettings;
         this.gitLabApiWrapper = gitLabApiWrapper;
+        this.variablesCache = variablesCache;
+        this.projectCatalogue = projectCatalogue;
+        this.parsedPathResolver = parsedPathResolver;
+        this.jobListExecutor = Executors.newFixedThreadPool(applicationSettings.getConfig().getJobListParallelism());
+        this.jobListRateLimiter = new RateLimiter(applicationSettings.getConfig().getJobListRequestsPerSecond());
 
         if (applicationArguments.containsOption("cleanupOnly") &&
             (!applicationArguments.getOptionValues("cleanupOnly").isEmpty())) {
@@ -111,9 +129,7 @@ public class GitlabServices {
         gitLabApi = gitLabApiWrapper.getGitLabApi();
 
         try {
-            ProjectFilter filter = new ProjectFilter().withMembership(true).withMinAccessLevel(AccessLevel.MAINTAINER);
-
-            List<Project> projects = gitLabApi.getProjectApi().getProjects(filter);
+            List<Project> projects = projectCatalogue.getProjects();
 
             if (cleanupOnly) {
                 log.info("start with cleanup process");
@@ -123,7 +139,7 @@ public class GitlabServices {
                 //start hooks' update thread
                 updateHooksExecutor = Executors.newSingleThreadScheduledExecutor();
                 updateHooksScheduledFuture =
-                        updateHooksExecutor.scheduleAtFixedRate(new HooksUpdateRunnable(gitLabApiWrapper, webhookURL), 0,
+                        updateHooksExecutor.scheduleAtFixedRate(new HooksUpdateRunnable(gitLabApiWrapper, projectCatalogue, webhookURL), 0,
                                 HooksUpdateRunnable.INTERVAL, TimeUnit.MINUTES);
 
             }
@@ -151,15 +167,14 @@ public class GitlabServices {
 
     @PreDestroy
     private void stop() {
+        jobListExecutor.shutdownNow();
         try {
             if (!cleanupOnly) {
                 stopExecutors();
 
                 log.info("Destroying GitLab webhooks ...");
 
-                ProjectFilter filter = new ProjectFilter().withMembership(true).withMinAccessLevel(AccessLevel.MAINTAINER);
-
-                List<Project> projects = gitLabApi.getProjectApi().getProjects(filter);
+                List<Project> projects = projectCatalogue.getProjects();
                 HooksHelper.deleteWebHooks(projects, webhookURL, gitLabApi);
             }
 
@@ -217,54 +232,95 @@ public class GitlabServices {
         }
     }
 
+    /*
+     * The projects are read from the project catalogue, and their parameters (variables) are loaded concurrently by at most
+     * gitlab.jobList.parallelism threads. Whatever is not ready by the gitlab.jobList.timeoutSeconds deadline is left out,
+     * so that ALM Octane gets a partial list instead of a timeout.
+     */
     CIJobsList getJobList(boolean includeParameters) {
         CIJobsList ciJobsList = dtoFactory.newDTO(CIJobsList.class);
-        List<PipelineNode> list = new ArrayList<>();
-        StringBuilder projectNames = new StringBuilder();
+        List<Future<PipelineNode>> jobs = new ArrayList<>();
+        long timeoutSeconds = applicationSettings.getConfig().getJobListTimeoutSeconds();
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(timeoutSeconds);
+        boolean complete = true;
         try {
-            ProjectFilter filter = new ProjectFilter();
-            filter.withMembership(true).withMinAccessLevel(AccessLevel.MAINTAINER);
-            List<Project> projectsFilters = gitLabApi.getProjectApi().getProjects(filter);
+            for (Project project : projectCatalogue.getProjects()) {
+                if (System.currentTimeMillis() > deadline) {
+                    complete = false;
+                    break;
+                }
+                jobs.add(includeParameters ?
+                         jobListExecutor.submit(() -> {
+                             jobListRateLimiter.acquire();
+                             return createJobListNode(project, true);
+                         }) :
+                         CompletableFuture.completedFuture(createJobListNode(project, false)));
+            }
             log.info("There are only " +
-                     projectsFilters.size() +
+                     jobs.size() +
                      " projects with access level => MAINTAINER for the integrated user");
 
+        } catch (Exception e) {
+            log.warn("Failed to add some jobs to the job list", e);
+        }
 
-            for (Project project : projectsFilters) {
-                try {
-                    ParsedPath parseProject = new ParsedPath(project, gitLabApi);
-                    PipelineNode buildConf;
-
-                    buildConf = dtoFactory.newDTO(PipelineNode.class).setJobCiId(parseProject.getJobCiId(true))
-                            .setName(project.getNameWithNamespace()).setDefaultBranchName(project.getDefaultBranch())
-                            .setMultiBranchType(MultiBranchType.MULTI_BRANCH_PARENT);
-
-                    if (includeParameters) {
-                        buildConf.setParameters(getParameters(parseProject));
-                    }
+        List<PipelineNode> list = new ArrayList<>();
+        StringBuilder projectNames = new StringBuilder();
+        for (Future<PipelineNode> job : jobs) {
+            try {
+                PipelineNode buildConf = job.get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+                if (buildConf != null) {
                     projectNames.append(buildConf.getName()).append(",");
                     list.add(buildConf);
-                } catch (Exception e) {
-                    log.warn("Failed to add some tags to the job list", e);
                 }
+            } catch (TimeoutException e) {
+                job.cancel(true);
+                complete = false;
+            } catch (ExecutionException e) {
+                log.warn("Failed to add some tags to the job list", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                jobs.forEach(pendingJob -> pendingJob.cancel(true));
+                complete = false;
+                break;
             }
-
-        } catch (Exception e) {
-            log.warn("Failed to add some jobs to the job list", e);
         }
 
+        if (!complete) {
+            log.warn(String.format("The job list is partial: only %d jobs were ready within %d seconds (gitlab.jobList.timeoutSeconds)",
+                    list.size(), timeoutSeconds));
+        }
         log.info("getJobList results:" + projectNames);
         ciJobsList.setJobs(list.toArray(new PipelineNode[0]));
         return ciJobsList;
     }
 
+    private PipelineNode createJobListNode(Project project, boolean includeParameters) {
+        try {
+            ParsedPath parseProject = new ParsedPath(project, gitLabApi);
+            PipelineNode buildConf;
+
+            buildConf = dtoFactory.newDTO(PipelineNode.class).setJobCiId(parseProject.getJobCiId(true))
+                    .setName(project.getNameWithNamespace()).setDefaultBranchName(project.getDefaultBranch())
+                    .setMultiBranchType(MultiBranchType.MULTI_BRANCH_PARENT);
+
+            if (includeParameters) {
+                buildConf.setParameters(getParameters(parseProject));
+            }
+            return buildConf;
+        } catch (Exception e) {
+            log.warn("Failed to add some tags to the job list", e);
+            return null;
+        }
+    }
+
     /*private Boolean isCurrentUserAdmin() throws GitLabApiException {
         return gitLabApi.getUserApi().getCurrentUser().getIsAdmin() != null && gitLabApi.getUserApi().getCurrentUser().getIsAdmin();
     }*/
 
     public List<CIParameter> getParameters(ParsedPath project) {
         List<CIParameter> parametersList = new ArrayList<>();
-        List<Variable> projectVariables = VariablesHelper.getVariables(project, gitLabApi, applicationSettings.getConfig());
+        List<Variable> projectVariables = VariablesHelper.getVariables(project, applicationSettings.getConfig(), variablesCache);
 
         projectVariables.forEach(var -> {
             CIParameter param = dtoFactory.newDTO(CIParameter.class);
@@ -279,9 +335,9 @@ public class GitlabServices {
 
     PipelineNode createStructure(String buildId, boolean isMultiBranchParent) {
 
-        ParsedPath project = new ParsedPath(buildId, gitLabApi, isMultiBranchParent ? PathType.MULTI_BRUNCH : PathType.PIPELINE);
+        ParsedPath project = new ParsedPath(buildId, gitLabApi, parsedPathResolver, isMultiBranchParent ? PathType.MULTI_BRUNCH : PathType.PIPELINE);
         try {
-            Project currentProject = gitLabApi.getProjectApi().getProject(project.getFullPathOfProject());
+            Project currentProject = projectCatalogue.getProject(project.getFullPathOfProject());
             HooksHelper.addWebHookToProject(gitLabApi, webhookURL, project.getFullPathOfProject(), true);
             return dtoFactory.newDTO(PipelineNode.class).setJobCiId(project.getJobCiId(isMultiBranchParent))
                     .setDefaultBranchName(currentProject.getDefaultBranch()).setMultiBranchType(
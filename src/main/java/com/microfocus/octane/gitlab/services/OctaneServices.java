@@ -37,7 +37,6 @@ import com.hp.octane.integrations.dto.general.*;
 import com.hp.octane.integrations.dto.parameters.CIParameter;
 import com.hp.octane.integrations.dto.parameters.CIParameters;
 import com.hp.octane.integrations.dto.pipelines.PipelineNode;
-import com.hp.octane.integrations.dto.scm.Branch;
 import com.hp.octane.integrations.dto.snapshots.CIBuildResult;
 import com.hp.octane.integrations.dto.snapshots.CIBuildStatus;
 import com.hp.octane.integrations.dto.tests.*;
@@ -63,6 +62,9 @@ import org.gitlab4j.api.GitLabApi;
 import org.gitlab4j.api.GitLabApiException;
 import org.gitlab4j.api.models.Job;
 import org.gitlab4j.api.models.Pipeline;
+import org.gitlab4j.api.models.PipelineFilter;
+import org.gitlab4j.api.models.PipelineStatus;
+import org.gitlab4j.api.models.Project;
 import org.gitlab4j.api.models.Variable;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Scope;
@@ -70,6 +72,8 @@ import org.springframework.stereotype.Component;
 
 import java.io.*;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -85,11 +89,15 @@ public class OctaneServices extends CIPluginServices {
     private static GitLabApiWrapper gitLabApiWrapper;
     private static ApplicationSettings applicationSettings;
     private static GitlabServices gitlabServices;
+    private static JobLocationIndex jobLocationIndex;
+    private static ProjectCatalogue projectCatalogue;
+    private static ParsedPathResolver parsedPathResolver;
+    private static BranchesListProvider branchesListProvider;
+    private static PipelineIndex pipelineIndex;
+    private static PipelineScanner pipelineScanner;
 
     //    private final Transformer nunitTransformer = TransformerFactory.newInstance().newTransformer(new StreamSource(this.getClass().getClassLoader().getResourceAsStream("hudson/plugins/nunit/" + NUNIT_TO_JUNIT_XSLFILE_STR)));
     private static GitLabApi gitLabApi;
-    private final String RUNNING_STATUS = "running";
-    private final String PENDING_STATUS = "pending";
     private final String TESTS_TO_RUN_PARAM_NAME = "testsToRun";
     private final String TEST_RUNNER_BRANCH_PARAM_NAME = "testRunnerBranch";
     private final String TEST_RUNNER_FRAMEWORK_PARAM_NAME = "testRunnerFramework";
@@ -209,8 +217,8 @@ public class OctaneServices extends CIPluginServices {
     private boolean checkIfMultiBranchParentId(String rootJobCiId) {
 
         try {
-            ParsedPath parsedPath = new ParsedPath(rootJobCiId, gitLabApi, PathType.MULTI_BRUNCH);
-            gitLabApi.getProjectApi().getProject(parsedPath.getFullPathOfProject());
+            ParsedPath parsedPath = new ParsedPath(rootJobCiId, gitLabApi, parsedPathResolver, PathType.MULTI_BRUNCH);
+            projectCatalogue.getProject(parsedPath.getFullPathOfProject());
         } catch (GitLabApiException e) {
             if (e.getHttpStatus() == HttpStatus.SC_NOT_FOUND) {
                 return false;
@@ -261,12 +269,14 @@ public class OctaneServices extends CIPluginServices {
             });
 
             jobCiId = jobCiIdBuilder.toString();
-            ParsedPath parsedPath = new ParsedPath(jobCiId, gitLabApi, PathType.PIPELINE);
+            ParsedPath parsedPath = new ParsedPath(jobCiId, gitLabApi, parsedPathResolver, PathType.PIPELINE);
 
-            gitLabApi.getPipelineApi().createPipeline(
+            Map<String, String> variables = VariablesHelper.convertParametersToVariables(ciParameters);
+            Pipeline pipeline = gitLabApi.getPipelineApi().createPipeline(
                     parsedPath.getPathWithNameSpace(),
                     parsedPath.getCurrentBranchOrDefault(),
-                    VariablesHelper.convertParametersToVariables(ciParameters));
+                    variables);
+            pipelineIndex.putIfAbsent(parsedPath.getPathWithNameSpace(), variables, pipeline.getId(), pipeline.getRef());
 
         } catch (GitLabApiException e) {
             log.error("Failed to start a pipeline", e);
@@ -340,24 +350,10 @@ public class OctaneServices extends CIPluginServices {
 
     @Override
     public CIBranchesList getBranchesList(String jobCiId, String filterBranchName) {
-        ParsedPath parsedPath = new ParsedPath(jobCiId, gitLabApi, PathType.PIPELINE);
+        ParsedPath parsedPath = new ParsedPath(jobCiId, gitLabApi, parsedPathResolver, PathType.PIPELINE);
 
         try {
-            String path = parsedPath.getPathWithNameSpace();
-
-            List<Branch> result = gitLabApi.getRepositoryApi().getBranches(path, filterBranchName).stream()
-                    .map(branch -> dtoFactory.newDTO(Branch.class).setName(branch.getName())
-                            .setInternalId(ParsedPath.convertBranchName(branch.getName()))).collect(Collectors.toList());
-
-            List<Branch> tags = gitLabApi.getTagsApi().getTags(path, null, null, filterBranchName)
-                    .stream().map(tag -> dtoFactory.newDTO(Branch.class)
-                            .setName(tag.getName())
-                            .setInternalId(ParsedPath.convertBranchName(tag.getName())))
-                    .collect(Collectors.toList());
-            result.addAll(tags);
-
-            return dtoFactory.newDTO(CIBranchesList.class)
-                    .setBranches(result);
+            return branchesListProvider.getBranchesList(parsedPath.getPathWithNameSpace(), filterBranchName);
         } catch (GitLabApiException e) {
             log.error("Failed to get list of branches", e);
             throw new RuntimeException(e);
@@ -375,63 +371,81 @@ public class OctaneServices extends CIPluginServices {
     }
 
 
+    /*
+     * Finds the project of the job by cutting the last parts of the job path until the job is found in one of them.
+     * Only used when the job location was not learned from the webhook events.
+     */
+    private JobLocationIndex.JobLocation searchJobLocation(String jobFullName, String buildNumber) {
+        ParsedPath project = new ParsedPath(ParsedPath.cutLastPartOfPath(jobFullName), gitLabApi, parsedPathResolver, PathType.PROJECT);
+        ParsedPath cutProject = null;
+
+        Optional<Job> optionalJob = extractGitLabJob(project, buildNumber);
+        if (optionalJob.isEmpty()) {
+            cutProject = new ParsedPath(ParsedPath.cutLastPartOfPath(project.getPathWithNameSpace()), gitLabApi, parsedPathResolver, PathType.PROJECT);
+        }
+
+        while (optionalJob.isEmpty() && !project.getFullPathOfProject().equals(cutProject.getFullPathOfProject())) {
+            cutProject = project;
+            project = new ParsedPath(ParsedPath.cutLastPartOfPath(project.getPathWithNameSpace()), gitLabApi, parsedPathResolver, PathType.PROJECT);
+            optionalJob = extractGitLabJob(project, buildNumber);
+        }
+
+        Job job = optionalJob.orElseThrow(() -> new RuntimeException("Can not find gitlab project path: " + jobFullName));
+        return new JobLocationIndex.JobLocation(project.getId(), job.getId());
+    }
+
     @Override
     public InputStream getTestsResult(String jobFullName, String buildNumber) {
         TestsResult result = dtoFactory.newDTO(TestsResult.class);
         try {
-            ParsedPath project = new ParsedPath(ParsedPath.cutLastPartOfPath(jobFullName), gitLabApi, PathType.PROJECT);
-            ParsedPath cutProject = null;
-
-            Optional<Job> optionalJob = extractGitLabJob(project, buildNumber);
-            if (optionalJob.isEmpty()) {
-                cutProject = new ParsedPath(ParsedPath.cutLastPartOfPath(project.getPathWithNameSpace()), gitLabApi, PathType.PROJECT);
+            JobLocationIndex.JobLocation jobLocation = jobLocationIndex.get(jobFullName, buildNumber);
+            if (jobLocation == null) {
+                jobLocation = searchJobLocation(jobFullName, buildNumber);
             }
 
-            while (optionalJob.isEmpty() && !project.getFullPathOfProject().equals(cutProject.getFullPathOfProject())) {
-                cutProject = project;
-                project = new ParsedPath(ParsedPath.cutLastPartOfPath(project.getPathWithNameSpace()), gitLabApi, PathType.PROJECT);
-                optionalJob = extractGitLabJob(project, buildNumber);
-            }
-
-            Job job = optionalJob.orElseThrow(() -> new RuntimeException("Can not find gitlab project path: " + jobFullName));
-
-            //report gherkin test results
+            //report the test results that were converted when the job finished (Gherkin and JUnit)
 
-            File mqmTestResultsFile = TestResultsHelper.getMQMTestResultsFilePath(project.getId(), job.getId(), applicationSettings.getConfig().getTestResultsOutputFolderPath());
+            File mqmTestResultsFile = TestResultsHelper.getMQMTestResultsFilePath(jobLocation.getProjectId(), jobLocation.getJobId(), applicationSettings.getConfig().getTestResultsOutputFolderPath());
             InputStream output = null;
 
 
             if (mqmTestResultsFile.exists() && mqmTestResultsFile.length() > 0) {
-                log.info(String.format("get Gherkin Tests Result of %s from  %s, file exist=%s",
-                        project.getDisplayName(), mqmTestResultsFile.getAbsolutePath(), mqmTestResultsFile.exists()));
+                log.info(String.format("get Tests Result of %s from  %s, file exist=%s",
+                        jobFullName, mqmTestResultsFile.getAbsolutePath(), mqmTestResultsFile.exists()));
                 try {
                     output = mqmTestResultsFile.exists() && mqmTestResultsFile.length() > 0 ? new FileInputStream(mqmTestResultsFile.getAbsolutePath()) : null;
                 } catch (IOException e) {
-                    log.error("failed to get gherkin test results for  " + project.getDisplayName() + " #" + job.getId() + " from " + mqmTestResultsFile.getAbsolutePath());
+                    log.error("failed to get test results for  " + jobFullName + " #" + jobLocation.getJobId() + " from " + mqmTestResultsFile.getAbsolutePath());
                 }
                 return output;
             }
 
-            //if there is no test results for gherkin - report other test results
+            //if there is no converted test results file (e.g. it was already cleaned up) - convert the job artifacts now
 
-            BuildContext buildContext = dtoFactory.newDTO(BuildContext.class)
-                    .setJobId(project.getFullPathOfProjectWithBranch().toLowerCase())
-                    .setJobName(project.getPathWithNameSpace())
-                    .setBuildId(job.getId().toString())
-                    .setBuildName(job.getId().toString())
-                    .setServerId(applicationSettings.getConfig().getCiServerIdentity());
-            result = result.setBuildContext(buildContext);
+            Project project = projectCatalogue.getProject(jobLocation.getProjectId());
+            Job job = gitLabApi.getJobApi().getJob(jobLocation.getProjectId(), jobLocation.getJobId());
 
             JunitTestResultsProvider junitTestResultsProvider = JunitTestResultsProvider.getInstance(applicationSettings);
-            InputStream artifactFiles = gitLabApi.getJobApi().downloadArtifactsFile(project.getId(), job.getId());
-
-            List<TestRun> tests = junitTestResultsProvider.createAndGetTestList(
-                    artifactFiles);
-
-            if (tests != null && !tests.isEmpty()) {
-                result.setTestRuns(tests);
-            } else {
-                log.warn("Unable to extract test results from files defined by the %s pattern. Check the pattern correctness");
+            result = junitTestResultsProvider.createTestsResultEnvelope(project, job);
+            File artifactsFile = TestResultsHelper.downloadArtifacts(gitLabApi, project.getId(), job.getId());
+
+            //the test results are written to a temp file, which is deleted once the SDK is done reading it
+            File testsResultFile = File.createTempFile("gitlab-tests-result-", ".xml");
+            try {
+                int testRunsCount;
+                try (OutputStream outputStream = new FileOutputStream(testsResultFile)) {
+                    testRunsCount = junitTestResultsProvider.writeTestsResult(artifactsFile, result, outputStream);
+                }
+                if (testRunsCount == 0) {
+                    log.warn(String.format("Unable to extract test results from files defined by the %s pattern. Check the pattern correctness",
+                            junitTestResultsProvider.getTestResultsFilePattern()));
+                }
+                return Files.newInputStream(testsResultFile.toPath(), StandardOpenOption.DELETE_ON_CLOSE);
+            } catch (Exception e) {
+                testsResultFile.delete();
+                throw e;
+            } finally {
+                artifactsFile.delete();
             }
         } catch (Exception e) {
             log.warn("Failed to return test results", e);
@@ -449,6 +463,36 @@ public class OctaneServices extends CIPluginServices {
         OctaneServices.gitlabServices = gitlabServices;
     }
 
+    @Autowired
+    public void setJobLocationIndex(JobLocationIndex jobLocationIndex) {
+        OctaneServices.jobLocationIndex = jobLocationIndex;
+    }
+
+    @Autowired
+    public void setProjectCatalogue(ProjectCatalogue projectCatalogue) {
+        OctaneServices.projectCatalogue = projectCatalogue;
+    }
+
+    @Autowired
+    public void setParsedPathResolver(ParsedPathResolver parsedPathResolver) {
+        OctaneServices.parsedPathResolver = parsedPathResolver;
+    }
+
+    @Autowired
+    public void setBranchesListProvider(BranchesListProvider branchesListProvider) {
+        OctaneServices.branchesListProvider = branchesListProvider;
+    }
+
+    @Autowired
+    public void setPipelineIndex(PipelineIndex pipelineIndex) {
+        OctaneServices.pipelineIndex = pipelineIndex;
+    }
+
+    @Autowired
+    public void setPipelineScanner(PipelineScanner pipelineScanner) {
+        OctaneServices.pipelineScanner = pipelineScanner;
+    }
+
     @Autowired
     public void setGitLabApi(GitLabApiWrapper gitLabApiWrapper) {
         OctaneServices.gitLabApiWrapper = gitLabApiWrapper;
@@ -466,18 +510,17 @@ public class OctaneServices extends CIPluginServices {
     @Override
     public void stopPipelineRun(String jobId, CIParameters ciParameters) {
         try {
-            ParsedPath parsedPath = new ParsedPath(jobId, gitLabApi, PathType.PIPELINE);
-
-            List<Pipeline> pipelines = gitLabApi.getPipelineApi()
-                    .getPipelines(parsedPath.getPathWithNameSpace());
+            ParsedPath parsedPath = new ParsedPath(jobId, gitLabApi, parsedPathResolver, PathType.PIPELINE);
 
             CIParameter octaneExecutionId = ciParameters.getParameters().stream()
                     .filter(parameter -> parameter.getName().equals(SdkConstants.JobParameters.OCTANE_AUTO_ACTION_EXECUTION_ID_PARAMETER_NAME))
                     .findAny().orElse(null);
 
             if (octaneExecutionId != null) {
-                long pipelineIdWithParameter = getIdWhereParameter(parsedPath.getPathWithNameSpace(),
-                        pipelines, octaneExecutionId);
+                PipelineIndex.IndexedPipeline indexedPipeline = pipelineIndex.get(parsedPath.getPathWithNameSpace(),
+                        octaneExecutionId.getName(), octaneExecutionId.getValue().toString());
+                long pipelineIdWithParameter = indexedPipeline != null ? indexedPipeline.getId() :
+                                               getIdWhereParameter(parsedPath.getPathWithNameSpace(), octaneExecutionId);
 
                 gitLabApi.getPipelineApi().cancelPipelineJobs(parsedPath.getPathWithNameSpace(),
                         pipelineIdWithParameter);
@@ -490,45 +533,31 @@ public class OctaneServices extends CIPluginServices {
 
     @Override
     public CIBuildStatusInfo getJobBuildStatus(String jobCiId, String parameterName, String parameterValue) {
-        ParsedPath parsedPath = new ParsedPath(jobCiId, gitLabApi, PathType.PIPELINE);
-        try {
-            List<Pipeline> pipelines = gitLabApi.getPipelineApi()
-                    .getPipelines(parsedPath.getPathWithNameSpace());
-
-            Optional<Pipeline> chosenPipeline = pipelines.stream().map(pipeline -> {
-                try {
-                    List<Variable> pipelineVariables = gitLabApi.getPipelineApi()
-                            .getPipelineVariables(parsedPath.getPathWithNameSpace(), pipeline.getId());
+        ParsedPath parsedPath = new ParsedPath(jobCiId, gitLabApi, parsedPathResolver, PathType.PIPELINE);
+        PipelineIndex.IndexedPipeline indexedPipeline =
+                pipelineIndex.get(parsedPath.getPathWithNameSpace(), parameterName, parameterValue);
+        if (indexedPipeline != null) {
+            try {
+                Pipeline pipeline = gitLabApi.getPipelineApi().getPipeline(parsedPath.getPathWithNameSpace(), indexedPipeline.getId());
+                return createBuildStatusInfo(parsedPath, pipeline.getId(), pipeline.getRef(), getStatus(pipeline),
+                        parameterName, parameterValue);
+            } catch (GitLabApiException e) {
+                log.warn("Failed to get the indexed pipeline " + indexedPipeline.getId() + ", searching for it", e);
+            }
+        }
 
-                    for (Variable variable : pipelineVariables) {
-                        if (variable.getKey().equals(parameterName) && variable.getValue().equals(parameterValue)) {
-                            return pipeline;
-                        }
-                    }
-                    return null;
-                } catch (GitLabApiException e) {
-                    log.error("Failed to get variables from pipeline", e);
-                    throw new RuntimeException(e);
-                }
-            }).filter(Objects::nonNull).findAny();
+        try {
+            PipelineFilter filter = new PipelineFilter();
+            if (parsedPath.getCurrentBranch() != null) {
+                filter.withRef(parsedPath.getCurrentBranch());
+            }
+            Optional<Pipeline> chosenPipeline = pipelineScanner.findPipeline(parsedPath.getPathWithNameSpace(), filter,
+                    pipelineVariables -> pipelineVariables.stream().anyMatch(variable ->
+                            variable.getKey().equals(parameterName) && variable.getValue().equals(parameterValue)));
 
             if (chosenPipeline.isPresent()) {
-                String status = chosenPipeline.get().getStatus().toValue();
-                CIBuildStatus currentCIBuildStatus = getCIBuildStatus(status);
-                Optional<CIBuildStatus> buildStatus = Arrays.stream(CIBuildStatus.values())
-                        .filter(ciBuildStatus -> Objects.equals(ciBuildStatus, currentCIBuildStatus))
-                        .findAny();
-
-                if (buildStatus.isEmpty()) {
-                    throw new RuntimeException("Failed to get the correct build status");
-                }
-                return dtoFactory.newDTO(CIBuildStatusInfo.class)
-                        .setJobCiId(ParsedPath.PIPELINE_JOB_CI_ID_PREFIX + parsedPath.getPathWithNameSpace() + "/" + ParsedPath.convertBranchName(chosenPipeline.get().getRef()))
-                        .setBuildStatus(buildStatus.get())
-                        .setBuildCiId(getBuildCiId(chosenPipeline.get()))
-                        .setParamName(parameterName)
-                        .setParamValue(parameterValue)
-                        .setResult(getCiBuildResult(status));
+                return createBuildStatusInfo(parsedPath, chosenPipeline.get().getId(), chosenPipeline.get().getRef(),
+                        getStatus(chosenPipeline.get()), parameterName, parameterValue);
             }
             throw new RuntimeException("Failed to get information about the pipeline");
         } catch (GitLabApiException e) {
@@ -537,33 +566,40 @@ public class OctaneServices extends CIPluginServices {
         }
     }
 
-    private long getIdWhereParameter(String cleanedPath, List<Pipeline> pipelines, CIParameter executionId) {
-        pipelines = pipelines.stream()
-                .filter(this::pipelineInQueue)
-                .collect(Collectors.toList());
+    private CIBuildStatusInfo createBuildStatusInfo(ParsedPath parsedPath, long pipelineId, String ref, String status,
+            String parameterName, String parameterValue) {
+        CIBuildStatus currentCIBuildStatus = getCIBuildStatus(status);
+        Optional<CIBuildStatus> buildStatus = Arrays.stream(CIBuildStatus.values())
+                .filter(ciBuildStatus -> Objects.equals(ciBuildStatus, currentCIBuildStatus))
+                .findAny();
 
-        return pipelines.stream().map(pipeline -> {
-                    List<Variable> pipelineVariables = null;
-                    try {
-                        pipelineVariables = gitLabApi.getPipelineApi()
-                                .getPipelineVariables(cleanedPath, pipeline.getId());
-
-                        for (Variable variable : pipelineVariables) {
-                            if (variable.getValue().equals(executionId.getValue().toString())) {
-                                return pipeline.getId();
-                            }
-                        }
-                    } catch (GitLabApiException e) {
-                        log.error("Failed to get parameters of the pipeline", e);
-                    }
-                    return NO_SUCH_PIPELINE;
-                }).filter(integer -> !Objects.equals(integer, NO_SUCH_PIPELINE))
-                .findAny().orElse(NO_SUCH_PIPELINE);
+        if (buildStatus.isEmpty()) {
+            throw new RuntimeException("Failed to get the correct build status");
+        }
+        return dtoFactory.newDTO(CIBuildStatusInfo.class)
+                .setJobCiId(ParsedPath.PIPELINE_JOB_CI_ID_PREFIX + parsedPath.getPathWithNameSpace() + "/" + ParsedPath.convertBranchName(ref))
+                .setBuildStatus(buildStatus.get())
+                .setBuildCiId(String.valueOf(pipelineId))
+                .setParamName(parameterName)
+                .setParamValue(parameterValue)
+                .setResult(getCiBuildResult(status));
     }
 
-    private boolean pipelineInQueue(Pipeline pipeline) {
-        return pipeline.getStatus().toString().equals(RUNNING_STATUS)
-                || pipeline.getStatus().toString().equals(PENDING_STATUS);
+    private long getIdWhereParameter(String cleanedPath, CIParameter executionId) throws GitLabApiException {
+        //only the pipelines in queue can be stopped
+        for (PipelineStatus status : Arrays.asList(PipelineStatus.RUNNING, PipelineStatus.PENDING)) {
+            Optional<Pipeline> pipeline = pipelineScanner.findPipeline(cleanedPath, new PipelineFilter().withStatus(status),
+                    pipelineVariables -> pipelineVariables.stream()
+                            .anyMatch(variable -> variable.getValue().equals(executionId.getValue().toString())));
+            if (pipeline.isPresent()) {
+                return pipeline.get().getId();
+            }
+        }
+        return NO_SUCH_PIPELINE;
+    }
+
+    private static String getStatus(Pipeline pipeline) {
+        return pipeline.getStatus() != null ? pipeline.getStatus().toValue() : null;
     }
 
     private CIBuildStatus getCIBuildStatus(String statusStr) {
@@ -579,16 +615,12 @@ public class OctaneServices extends CIPluginServices {
     }
 
     private CIBuildResult getCiBuildResult(String status) {
-        if (status.equals("success")) return CIBuildResult.SUCCESS;
-        if (status.equals("failed")) return CIBuildResult.FAILURE;
-        if (status.equals("drop") || status.equals("skipped") || status.equals("canceled"))
+        if ("success".equals(status)) return CIBuildResult.SUCCESS;
+        if ("failed".equals(status)) return CIBuildResult.FAILURE;
+        if ("drop".equals(status) || "skipped".equals(status) || "canceled".equals(status))
             return CIBuildResult.ABORTED;
-        if (status.equals("unstable")) return CIBuildResult.UNSTABLE;
+        if ("unstable".equals(status)) return CIBuildResult.UNSTABLE;
         return CIBuildResult.UNAVAILABLE;
     }
 
-    private String getBuildCiId(Pipeline pipeline) {
-        return String.valueOf(pipeline.getId());
-    }
-
 }
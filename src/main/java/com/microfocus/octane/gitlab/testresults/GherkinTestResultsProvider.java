@@ -38,7 +38,6 @@ import org.gitlab4j.api.models.Job;
 import org.gitlab4j.api.models.Project;
 
 import java.io.File;
-import java.io.InputStream;
 import java.util.List;
 
 public class GherkinTestResultsProvider {
@@ -52,7 +51,7 @@ public class GherkinTestResultsProvider {
 
     // Static method
     // Static method to create instance of Singleton class
-    public static GherkinTestResultsProvider getInstance(ApplicationSettings applicationSettings)
+    public static synchronized GherkinTestResultsProvider getInstance(ApplicationSettings applicationSettings)
     {
         if (gherkinTestResultsProviderInstance == null)
             gherkinTestResultsProviderInstance = new GherkinTestResultsProvider(applicationSettings);
@@ -74,11 +73,14 @@ public class GherkinTestResultsProvider {
         return testResultsRootFolder;
     }
 
-    public boolean createTestList(Project project, Job job,InputStream artifactFiles){
+    public String getTestResultsFilePattern() {
+        return testResultsFilePattern;
+    }
+
+    public boolean createTestList(Project project, Job job, List<File> artifacts){
 
-        if(TestResultsHelper.isFilePatternExist(testResultsFilePattern)){
+        if(TestResultsHelper.isFilePatternExist(testResultsFilePattern) && artifacts != null){
 
-            List<File> artifacts = TestResultsHelper.extractArtifactsToFiles(artifactFiles,testResultsFilePattern);
             File mqmTestResultsFile = TestResultsHelper.getMQMTestResultsFilePath(project.getId(),job.getId(),getTestResultRootFolder());
 
             try {
@@ -31,17 +31,17 @@ package com.microfocus.octane.gitlab.testresults;
 
 import com.microfocus.octane.gitlab.helpers.GitLabApiWrapper;
 import com.microfocus.octane.gitlab.helpers.HooksHelper;
+import com.microfocus.octane.gitlab.helpers.ProjectCatalogue;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.gitlab4j.api.GitLabApi;
 import org.gitlab4j.api.GitLabApiException;
-import org.gitlab4j.api.models.AccessLevel;
 import org.gitlab4j.api.models.Project;
-import org.gitlab4j.api.models.ProjectFilter;
 import org.gitlab4j.api.models.User;
 
 import java.net.URL;
 import java.util.*;
+import java.util.stream.Collectors;
 
 
 public class HooksUpdateRunnable implements Runnable {
@@ -50,12 +50,14 @@ public class HooksUpdateRunnable implements Runnable {
     GitLabApi gitLabApi;
     Date lastUpdateTime;
     private final URL  webhookURL;
+    private final ProjectCatalogue projectCatalogue;
     private       long lastUpdatedProjectId = 0;
     static final Logger log = LogManager.getLogger(HooksUpdateRunnable.class);
 
-    public HooksUpdateRunnable(GitLabApiWrapper gitLabApiWrapper, URL webhookURL) {
+    public HooksUpdateRunnable(GitLabApiWrapper gitLabApiWrapper, ProjectCatalogue projectCatalogue, URL webhookURL) {
 
         this.gitLabApi = gitLabApiWrapper.getGitLabApi();
+        this.projectCatalogue = projectCatalogue;
         this.lastUpdateTime = new Date(System.currentTimeMillis());
         this.webhookURL = webhookURL;
     }
@@ -70,9 +72,9 @@ public class HooksUpdateRunnable implements Runnable {
 
         try {
 
-            ProjectFilter filter = new ProjectFilter().withIdAfter(lastUpdatedProjectId).withMembership(true)
-                    .withMinAccessLevel(AccessLevel.MAINTAINER);
-            List<Project> projects = gitLabApi.getProjectApi().getProjects(filter);
+            List<Project> projects = projectCatalogue.getProjects().stream()
+                    .filter(project -> project.getId() > lastUpdatedProjectId)
+                    .collect(Collectors.toList());
 
             if (!projects.isEmpty()) {
                 projects.forEach(project -> {
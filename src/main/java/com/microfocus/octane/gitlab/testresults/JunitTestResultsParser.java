@@ -0,0 +1,370 @@
+/*******************************************************************************
+ * Copyright 2017-2023 Open Text.
+ *
+ * The only warranties for products and services of Open Text and
+ * its affiliates and licensors (“Open Text”) are as may be set forth
+ * in the express warranty statements accompanying such products and services.
+ * Nothing herein should be construed as constituting an additional warranty.
+ * Open Text shall not be liable for technical or editorial errors or
+ * omissions contained herein. The information contained herein is subject
+ * to change without notice.
+ *
+ * Except as specifically indicated otherwise, this document contains
+ * confidential information and a valid license is required for possession,
+ * use or copying. If this work is provided to the U.S. Government,
+ * consistent with FAR 12.211 and 12.212, Commercial Computer Software,
+ * Computer Software Documentation, and Technical Data for Commercial Items are
+ * licensed to the U.S. Government under vendor's standard commercial license.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.microfocus.octane.gitlab.testresults;
+
+import com.hp.octane.integrations.dto.DTOFactory;
+import com.hp.octane.integrations.dto.tests.TestRun;
+import com.hp.octane.integrations.dto.tests.TestRunError;
+import com.hp.octane.integrations.dto.tests.TestRunResult;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Reader;
+import java.util.function.Consumer;
+
+/*
+ * Single pass StAX parser for JUnit (<testsuites>, <testsuite>) and NUnit 3 / NUnit 2 (<test-run>, <test-results>) reports.
+ * Test runs are handed to the consumer as soon as their <test-case> element is closed,
+ * so only a single test case is held in memory at any time.
+ */
+public class JunitTestResultsParser {
+
+    static final Logger log = LogManager.getLogger(JunitTestResultsParser.class);
+
+    /*
+     * XMLInputFactory implementations are not guaranteed to be thread safe, so every thread configures its own once
+     * and reuses it for all the reports it parses.
+     */
+    private static final ThreadLocal<XMLInputFactory> xmlInputFactory = ThreadLocal.withInitial(() -> {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    });
+
+    private final DTOFactory dtoFactory = DTOFactory.getInstance();
+
+    /*
+     * Safe to call concurrently: all the parsing state is local to the call.
+     */
+    public void parse(Reader reader, String reportName, Consumer<TestRun> consumer) throws XMLStreamException {
+        XMLStreamReader xml = xmlInputFactory.get().createXMLStreamReader(reader);
+        try {
+            while (xml.hasNext() && xml.next() != XMLStreamConstants.START_ELEMENT) {
+                // skip the prolog
+            }
+            if (!xml.isStartElement()) {
+                log.error(String.format("Artifact %s: no root element found", reportName));
+                return;
+            }
+
+            String rootTagName = xml.getLocalName().toLowerCase();
+            switch (rootTagName) {
+                case "testsuites":
+                case "testsuite":
+                    parseJunit(xml, consumer);
+                    break;
+                case "test-run":
+                    parseNunit(xml, consumer, this::createNunit3TestRun);
+                    break;
+                case "test-results":
+                    parseNunit(xml, consumer, this::createNunit2TestRun);
+                    break;
+                default:
+                    log.error(String.format("Artifact %s: unknown test result format that starts with the <%s> tag", reportName, rootTagName));
+                    break;
+            }
+        } finally {
+            xml.close();
+        }
+    }
+
+    /*
+     * Only the test cases of the root <testsuite>, or of the <testsuite> children of the root <testsuites>, are read,
+     * with the package of their own suite: nested suites are skipped, as they were by the JAXB binding of junit5.xsd.
+     */
+    private void parseJunit(XMLStreamReader xml, Consumer<TestRun> consumer) throws XMLStreamException {
+        if ("testsuite".equals(xml.getLocalName())) {
+            parseJunitSuite(xml, consumer);
+            return;
+        }
+        while (nextChildElement(xml)) {
+            if ("testsuite".equals(xml.getLocalName())) {
+                parseJunitSuite(xml, consumer);
+            } else {
+                skipElement(xml);
+            }
+        }
+    }
+
+    private void parseJunitSuite(XMLStreamReader xml, Consumer<TestRun> consumer) throws XMLStreamException {
+        String packageName = xml.getAttributeValue(null, "package");
+        while (nextChildElement(xml)) {
+            if ("testcase".equals(xml.getLocalName())) {
+                consumer.accept(createJunitTestRun(xml, packageName));
+            } else {
+                skipElement(xml);
+            }
+        }
+    }
+
+    private TestRun createJunitTestRun(XMLStreamReader xml, String packageName) throws XMLStreamException {
+        String className = xml.getAttributeValue(null, "classname");
+        String testName = xml.getAttributeValue(null, "name");
+        String time = xml.getAttributeValue(null, "time");
+
+        String skipped = null;
+        boolean failed = false;
+        TestRunError error = null;
+        boolean errorFromErrorTag = false;
+        while (nextChildElement(xml)) {
+            switch (xml.getLocalName()) {
+                case "skipped":
+                    skipped = readText(xml);
+                    break;
+                case "error":
+                case "failure":
+                    boolean isErrorTag = "error".equals(xml.getLocalName());
+                    TestRunError current = dtoFactory.newDTO(TestRunError.class);
+                    current.setErrorMessage(xml.getAttributeValue(null, "message"));
+                    current.setErrorType(xml.getAttributeValue(null, "type"));
+                    current.setStackTrace(readText(xml));
+                    //the first <error> wins over any <failure>, same as the first <failure> when there is no <error>
+                    if (error == null || (isErrorTag && !errorFromErrorTag)) {
+                        error = current;
+                        errorFromErrorTag = isErrorTag;
+                    }
+                    failed = true;
+                    break;
+                default:
+                    skipElement(xml);
+                    break;
+            }
+        }
+
+        TestRunResult testResultStatus;
+        if (skipped != null && !skipped.trim().isEmpty()) {
+            testResultStatus = TestRunResult.SKIPPED;
+        } else if (failed) {
+            testResultStatus = TestRunResult.FAILED;
+        } else {
+            testResultStatus = TestRunResult.PASSED;
+        }
+
+        TestRun tr = dtoFactory.newDTO(TestRun.class)
+                .setModuleName("")
+                .setPackageName(packageName)
+                .setClassName(className)
+                .setTestName(testName)
+                .setResult(testResultStatus)
+                .setDuration(toDuration(time));
+        if (error != null) {
+            tr.setError(error);
+        }
+        return tr;
+    }
+
+    private interface NunitTestRunFactory {
+        TestRun create(XMLStreamReader xml) throws XMLStreamException;
+    }
+
+    private void parseNunit(XMLStreamReader xml, Consumer<TestRun> consumer, NunitTestRunFactory testRunFactory) throws XMLStreamException {
+        while (xml.hasNext()) {
+            if (xml.next() == XMLStreamConstants.START_ELEMENT && "test-case".equals(xml.getLocalName())) {
+                consumer.accept(testRunFactory.create(xml));
+            }
+        }
+    }
+
+    /*
+     * NUnit 3: <test-case name="..." fullname="Ns.Class.Method" classname="Ns.Class" result="Passed|Failed|Skipped|Inconclusive" label="..." duration="...">
+     */
+    private TestRun createNunit3TestRun(XMLStreamReader xml) throws XMLStreamException {
+        String testName = xml.getAttributeValue(null, "name");
+        String className = xml.getAttributeValue(null, "classname");
+        if (className == null) {
+            className = getNunitClassName(xml.getAttributeValue(null, "fullname"));
+        }
+        String result = xml.getAttributeValue(null, "result");
+        String label = xml.getAttributeValue(null, "label");
+        String duration = xml.getAttributeValue(null, "duration");
+
+        TestRunResult testResultStatus;
+        if ("Failed".equalsIgnoreCase(result)) {
+            testResultStatus = TestRunResult.FAILED;
+        } else if ("Skipped".equalsIgnoreCase(result) || "Inconclusive".equalsIgnoreCase(result)) {
+            testResultStatus = TestRunResult.SKIPPED;
+        } else {
+            testResultStatus = TestRunResult.PASSED;
+        }
+
+        TestRunError error = readNunitFailure(xml, label);
+        return createNunitTestRun(className, testName, testResultStatus, toDuration(duration), error);
+    }
+
+    /*
+     * NUnit 2: <test-case name="Ns.Class.Method" executed="True|False" result="Success|Failure|Error|Ignored|..." success="True|False" time="...">
+     */
+    private TestRun createNunit2TestRun(XMLStreamReader xml) throws XMLStreamException {
+        String fullName = xml.getAttributeValue(null, "name");
+        String executed = xml.getAttributeValue(null, "executed");
+        String result = xml.getAttributeValue(null, "result");
+        String success = xml.getAttributeValue(null, "success");
+        String time = xml.getAttributeValue(null, "time");
+
+        TestRunResult testResultStatus;
+        if ("False".equalsIgnoreCase(executed) || "Ignored".equalsIgnoreCase(result) || "Skipped".equalsIgnoreCase(result)
+                || "NotRunnable".equalsIgnoreCase(result) || "Inconclusive".equalsIgnoreCase(result)) {
+            testResultStatus = TestRunResult.SKIPPED;
+        } else if ("False".equalsIgnoreCase(success) || "Failure".equalsIgnoreCase(result) || "Error".equalsIgnoreCase(result)) {
+            testResultStatus = TestRunResult.FAILED;
+        } else {
+            testResultStatus = TestRunResult.PASSED;
+        }
+
+        String className = getNunitClassName(fullName);
+        String testName = className != null ? fullName.substring(className.length() + 1) : fullName;
+        TestRunError error = readNunitFailure(xml, "Error".equalsIgnoreCase(result) ? result : null);
+        return createNunitTestRun(className, testName, testResultStatus, toDuration(time), error);
+    }
+
+    /*
+     * A test case with a <failure> is failed whatever its result attribute says, the same as a JUnit <testcase> with a
+     * <failure>, which is what the NUnit reports used to be converted to.
+     */
+    private TestRun createNunitTestRun(String className, String testName, TestRunResult testResultStatus, long duration,
+                                       TestRunError error) {
+        TestRun tr = dtoFactory.newDTO(TestRun.class)
+                .setModuleName("")
+                .setClassName(className)
+                .setTestName(testName)
+                .setResult(error != null ? TestRunResult.FAILED : testResultStatus)
+                .setDuration(duration);
+        if (error != null) {
+            tr.setError(error);
+        }
+        return tr;
+    }
+
+    /*
+     * Reads the rest of a <test-case> element, returning its <failure> (message and stack trace) if there is one.
+     */
+    private TestRunError readNunitFailure(XMLStreamReader xml, String errorType) throws XMLStreamException {
+        TestRunError error = null;
+        while (nextChildElement(xml)) {
+            if ("failure".equals(xml.getLocalName())) {
+                error = dtoFactory.newDTO(TestRunError.class);
+                error.setErrorType(errorType);
+                while (nextChildElement(xml)) {
+                    if ("message".equals(xml.getLocalName())) {
+                        error.setErrorMessage(readText(xml));
+                    } else if ("stack-trace".equals(xml.getLocalName())) {
+                        error.setStackTrace(readText(xml));
+                    } else {
+                        skipElement(xml);
+                    }
+                }
+            } else {
+                skipElement(xml);
+            }
+        }
+        return error;
+    }
+
+    /*
+     * The class name is everything before the last '.' that is not part of the test case arguments.
+     */
+    private static String getNunitClassName(String fullName) {
+        if (fullName == null) {
+            return null;
+        }
+        int argumentsStart = fullName.indexOf('(');
+        int lastDot = fullName.lastIndexOf('.', argumentsStart >= 0 ? argumentsStart : fullName.length());
+        return lastDot > 0 ? fullName.substring(0, lastDot) : null;
+    }
+
+    private static long toDuration(String seconds) {
+        if (seconds == null || seconds.trim().isEmpty()) {
+            return 1;
+        }
+        try {
+            return Double.valueOf(seconds).longValue() * 1000;
+        } catch (NumberFormatException e) {
+            return 1;
+        }
+    }
+
+    /*
+     * Collects the text content of the current element (mixed content included) and moves to its end tag.
+     */
+    private static String readText(XMLStreamReader xml) throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        int depth = 1;
+        while (depth > 0) {
+            switch (xml.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    text.append(xml.getTextCharacters(), xml.getTextStart(), xml.getTextLength());
+                    break;
+                default:
+                    break;
+            }
+        }
+        return text.toString();
+    }
+
+    /*
+     * Moves to the next child of the current element, skipping any text. Returns false once the element is closed.
+     */
+    private static boolean nextChildElement(XMLStreamReader xml) throws XMLStreamException {
+        while (true) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+    }
+
+    private static void skipElement(XMLStreamReader xml) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+}
@@ -30,49 +30,41 @@
 package com.microfocus.octane.gitlab.testresults;
 
 import com.hp.octane.integrations.dto.DTOFactory;
+import com.hp.octane.integrations.dto.tests.BuildContext;
 import com.hp.octane.integrations.dto.tests.TestRun;
-import com.hp.octane.integrations.dto.tests.TestRunError;
-import com.hp.octane.integrations.dto.tests.TestRunResult;
+import com.hp.octane.integrations.dto.tests.TestsResult;
 import com.microfocus.octane.gitlab.app.ApplicationSettings;
+import com.microfocus.octane.gitlab.helpers.ArtifactEntry;
 import com.microfocus.octane.gitlab.helpers.TestResultsHelper;
-import com.microfocus.octane.gitlab.model.junit5.Testcase;
-import com.microfocus.octane.gitlab.model.junit5.Testsuite;
-import com.microfocus.octane.gitlab.model.junit5.Testsuites;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.gitlab4j.api.models.Job;
 import org.gitlab4j.api.models.Project;
-import org.w3c.dom.Document;
-import org.xml.sax.InputSource;
-
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBException;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerConfigurationException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
-import java.io.ByteArrayOutputStream;
-import java.io.InputStream;
-import java.io.StringReader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-
-import static hudson.plugins.nunit.NUnitReportTransformer.NUNIT_TO_JUNIT_XSLFILE_STR;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 
 public class JunitTestResultsProvider {
 
     static final Logger log = LogManager.getLogger(JunitTestResultsProvider.class);
-    private final Transformer nunitTransformer;
+    private final JunitTestResultsParser parser = new JunitTestResultsParser();
     private final DTOFactory dtoFactory = DTOFactory.getInstance();
+    private final ApplicationSettings applicationSettings;
+    private final ForkJoinPool parsingPool;
     private String testResultsRootFolder ="";
     private static JunitTestResultsProvider junitTestResultsProviderInstance;
     String testResultsFilePattern =null;
 
-    public static JunitTestResultsProvider getInstance(ApplicationSettings applicationSettings) throws TransformerConfigurationException {
+    public static synchronized JunitTestResultsProvider getInstance(ApplicationSettings applicationSettings) {
         if (junitTestResultsProviderInstance == null)
             junitTestResultsProviderInstance = new JunitTestResultsProvider(applicationSettings);
 
@@ -80,7 +72,8 @@ public class JunitTestResultsProvider {
     }
 
 
-    private JunitTestResultsProvider(ApplicationSettings applicationSettings) throws TransformerConfigurationException {
+    private JunitTestResultsProvider(ApplicationSettings applicationSettings) {
+        this.applicationSettings = applicationSettings;
         String rootFolderPath = applicationSettings.getConfig().getTestResultsOutputFolderPath();
         if(rootFolderPath != null && !rootFolderPath.isEmpty()){
             testResultsRootFolder  = rootFolderPath;
@@ -89,110 +82,108 @@ public class JunitTestResultsProvider {
         if(TestResultsHelper.isFilePatternExist(applicationSettings.getConfig().getGitlabTestResultsFilePattern())){
             testResultsFilePattern = applicationSettings.getConfig().getGitlabTestResultsFilePattern();
         }
-        nunitTransformer = TransformerFactory.newInstance().newTransformer(new StreamSource(this.getClass().getClassLoader().getResourceAsStream("hudson/plugins/nunit/" + NUNIT_TO_JUNIT_XSLFILE_STR)));
 
+        int parsingParallelism = applicationSettings.getConfig().getTestResultsParsingParallelism();
+        parsingPool = parsingParallelism > 1 ? new ForkJoinPool(parsingParallelism) : null;
     }
 
-    public  List<TestRun> createAndGetTestList(InputStream artifactFiles){
-        List<TestRun> result = new ArrayList<>();
-        if(TestResultsHelper.isFilePatternExist(testResultsFilePattern)){
-
-            try {
-                List<Map.Entry<String, String>> artifacts = TestResultsHelper.extractArtifacts(artifactFiles,testResultsFilePattern);
-                JAXBContext jaxbContext = JAXBContext.newInstance(Testsuites.class);
-                for (Map.Entry<String, String> artifact : artifacts) {
-                    try {
-                        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-                        dbf.setFeature("http://xml.org/sax/features/external-general-entities", false);
-                        dbf.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
-                        DocumentBuilder db = dbf.newDocumentBuilder();
-                        Document doc = db.parse(new InputSource(new StringReader(artifact.getValue())));
-                        String rootTagName = doc.getDocumentElement().getTagName().toLowerCase();
-                        switch (rootTagName) {
-                            case "testsuites":
-                            case "testsuite":
-                                unmarshallAndAddToResults(result, jaxbContext, artifact.getValue());
-                                break;
-                            case "test-run":
-                            case "test-results":
-                                ByteArrayOutputStream os = new ByteArrayOutputStream();
-                                nunitTransformer.transform(new StreamSource(new StringReader(artifact.getValue())), new StreamResult(os));
-                                unmarshallAndAddToResults(result, jaxbContext, os.toString());
-                                break;
-                            default:
-                                log.error(String.format("Artifact %s: unknown test result format that starts with the <%s> tag", artifact.getKey(), rootTagName));
-                                break;
-                        }
-                    } catch (Exception e) {
-                        log.warn("Failed to create a test result list based on the job artifact: " + artifact.getKey(), e);
-                    }
-                }
-            } catch (Exception e) {
-                log.error("Failed to create a test list based on the job artifacts", e);
-            }
-        }
-        return result;
+    /**
+     * Creates a TestsResult without test runs, reporting the build of the given job.
+     */
+    public TestsResult createTestsResultEnvelope(Project project, Job job) {
+        BuildContext buildContext = dtoFactory.newDTO(BuildContext.class)
+                .setJobId((project.getPathWithNamespace() + "/" + project.getDefaultBranch()).toLowerCase())
+                .setJobName(project.getPathWithNamespace())
+                .setBuildId(job.getId().toString())
+                .setBuildName(job.getId().toString())
+                .setServerId(applicationSettings.getConfig().getCiServerIdentity());
+        return dtoFactory.newDTO(TestsResult.class).setBuildContext(buildContext);
     }
 
-    public boolean createTestList(Project project, Job job, InputStream artifactFiles){
-
-        if(TestResultsHelper.isFilePatternExist(testResultsFilePattern)){
-
-            try {
-                List<Map.Entry<String, String>> artifacts = TestResultsHelper.extractArtifacts(artifactFiles,testResultsFilePattern);
-                if(artifacts!=null && !artifacts.isEmpty()){
-                    TestResultsHelper.pushTestResultsKey(project,job);
-                    return true;
+    /**
+     * Writes the test results found in the job artifacts as a TestsResult XML, without holding all the test runs in memory.
+     * The output stream is closed when done.
+     * @return the number of test runs written
+     */
+    public int writeTestsResult(File artifactsFile, TestsResult envelope, OutputStream outputStream) throws IOException {
+        try (TestsResultXmlWriter writer = new TestsResultXmlWriter(outputStream, envelope)) {
+            forEachTestRun(artifactsFile, testRun -> {
+                try {
+                    writer.write(testRun);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
+            });
+            return writer.getTestRunsCount();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
 
-            } catch (Exception e) {
-                log.error("Failed to create a test list based on the job artifacts", e);
-            }
+    /*
+     * Hands the test runs to the consumer in the order of the files in the artifacts zip. Every file is parsed as a whole
+     * before its test runs are handed over, whether the files are parsed in parallel or one after the other, so a broken
+     * file is dropped as a whole in both cases.
+     */
+    private void forEachTestRun(File artifactsFile, Consumer<TestRun> consumer) throws IOException {
+        if (!TestResultsHelper.isFilePatternExist(testResultsFilePattern)) {
+            return;
         }
 
-        return false;
+        List<String> filePatterns = Collections.singletonList(testResultsFilePattern);
+        if (parsingPool != null) {
+            TestResultsHelper.forEachMappedArtifactEntry(artifactsFile, filePatterns, this::parseArtifact, parsingPool, testRuns -> testRuns.forEach(consumer));
+        } else {
+            TestResultsHelper.forEachArtifactEntry(artifactsFile, filePatterns, (artifact, matchedFilePatterns) -> parseArtifact(artifact).forEach(consumer));
+        }
     }
 
-    private void unmarshallAndAddToResults(List<TestRun> result, JAXBContext jaxbContext, String artifact) throws JAXBException {
-        Object ots = jaxbContext.createUnmarshaller().unmarshal(new StringReader(artifact));
-        if (ots instanceof Testsuites) {
-            ((Testsuites) ots).getTestsuite().forEach(ts -> ts.getTestcase().forEach(tc -> addTestCase(result, ts, tc)));
-        } else if (ots instanceof Testsuite) {
-            ((Testsuite) ots).getTestcase().forEach(tc -> addTestCase(result, (Testsuite) ots, tc));
+    /*
+     * A file that cannot be parsed is skipped as a whole, without affecting the other files of the artifact.
+     */
+    private List<TestRun> parseArtifact(ArtifactEntry artifact) {
+        List<TestRun> testRuns = new ArrayList<>();
+        try (Reader reader = artifact.openReader()) {
+            parser.parse(reader, artifact.getName(), testRuns::add);
+            return testRuns;
+        } catch (Exception e) {
+            log.warn("Failed to create a test result list based on the job artifact: " + artifact.getName(), e);
+            return Collections.emptyList();
         }
     }
 
-    private void addTestCase(List<TestRun> result, Testsuite ts, Testcase tc) {
-        TestRunResult testResultStatus;
-        if (tc.getSkipped() != null && !tc.getSkipped().trim().isEmpty()) {
-            testResultStatus = TestRunResult.SKIPPED;
-        } else if (!tc.getFailure().isEmpty() || !tc.getError().isEmpty()) {
-            testResultStatus = TestRunResult.FAILED;
-        } else {
-            testResultStatus = TestRunResult.PASSED;
-        }
+    public String getTestResultsFilePattern() {
+        return testResultsFilePattern;
+    }
+
+    /**
+     * Converts the test results found in the job artifacts into the mqmTests file of the job, the same way it is done
+     * for Gherkin, so that the SDK only has to stream the file when it asks for the test results.
+     * @return true if test results were found and their push to ALM Octane was requested
+     */
+    public boolean createTestList(Project project, Job job, File artifactsFile){
+
+        if(TestResultsHelper.isFilePatternExist(testResultsFilePattern) && artifactsFile != null){
 
-        TestRun tr = dtoFactory.newDTO(TestRun.class)
-                .setModuleName("")
-                .setPackageName(ts.getPackage())
-                .setClassName(tc.getClassname())
-                .setTestName(tc.getName())
-                .setResult(testResultStatus)
-                .setDuration(tc.getTime() != null ? Double.valueOf(tc.getTime()).longValue() * 1000 : 1);
-        if (tc.getError() != null && !tc.getError().isEmpty()) {
-            TestRunError error = dtoFactory.newDTO(TestRunError.class);
-            error.setErrorMessage(tc.getError().get(0).getMessage());
-            error.setErrorType(tc.getError().get(0).getType());
-            error.setStackTrace(tc.getError().get(0).getContent());
-            tr.setError(error);
-        } else if (tc.getFailure() != null && !tc.getFailure().isEmpty()) {
-            TestRunError error = dtoFactory.newDTO(TestRunError.class);
-            error.setErrorMessage(tc.getFailure().get(0).getMessage());
-            error.setErrorType(tc.getFailure().get(0).getType());
-            error.setStackTrace(tc.getFailure().get(0).getContent());
-            tr.setError(error);
+            File mqmTestResultsFile = TestResultsHelper.getMQMTestResultsFilePath(project.getId(), job.getId(), testResultsRootFolder);
+            TestsResult envelope = createTestsResultEnvelope(project, job);
+
+            try (OutputStream outputStream = new FileOutputStream(mqmTestResultsFile)) {
+                int testRunsCount = writeTestsResult(artifactsFile, envelope, outputStream);
+                if (testRunsCount == 0) {
+                    mqmTestResultsFile.delete();
+                    return false;
+                }
+                TestResultsHelper.pushTestResultsKey(project,job);
+                log.info("Test results for: [project" + project.getName() + ", id:" + project.getId() + ",job:" + job.getName() + "] were saved to file successfully ");
+                return true;
+            } catch (Exception e) {
+                mqmTestResultsFile.delete();
+                log.warn("unable to create test results " + project.getName() + "_" + job.getName() + ":" + e.getMessage(), e);
+            }
         }
-        result.add(tr);
+
+        return false;
     }
 
 }
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright 2017-2023 Open Text.
+ *
+ * The only warranties for products and services of Open Text and
+ * its affiliates and licensors (“Open Text”) are as may be set forth
+ * in the express warranty statements accompanying such products and services.
+ * Nothing herein should be construed as constituting an additional warranty.
+ * Open Text shall not be liable for technical or editorial errors or
+ * omissions contained herein. The information contained herein is subject
+ * to change without notice.
+ *
+ * Except as specifically indicated otherwise, this document contains
+ * confidential information and a valid license is required for possession,
+ * use or copying. If this work is provided to the U.S. Government,
+ * consistent with FAR 12.211 and 12.212, Commercial Computer Software,
+ * Computer Software Documentation, and Technical Data for Commercial Items are
+ * licensed to the U.S. Government under vendor's standard commercial license.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.microfocus.octane.gitlab.testresults;
+
+import com.hp.octane.integrations.dto.DTOFactory;
+import com.hp.octane.integrations.dto.tests.TestRun;
+import com.hp.octane.integrations.dto.tests.TestsResult;
+
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.XMLEvent;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+
+/*
+ * Writes a TestsResult XML (the mqmTests format) one test run at a time, instead of building the whole document in memory.
+ * The envelope (build context etc.) and every test run are still serialized by the SDK. Their XML is copied event by
+ * event with StAX, so only the <test_runs> element is written here, whatever the formatting of the SDK serializer.
+ */
+public class TestsResultXmlWriter implements Closeable {
+
+    private static final String TEST_RUNS = "test_runs";
+    private static final XMLInputFactory xmlInputFactory = createXmlInputFactory();
+    private static final XMLOutputFactory xmlOutputFactory = XMLOutputFactory.newInstance();
+    private static final XMLEventFactory xmlEventFactory = XMLEventFactory.newInstance();
+
+    private final DTOFactory dtoFactory = DTOFactory.getInstance();
+    private final OutputStream outputStream;
+    private final XMLEventWriter writer;
+    private final XMLEventReader envelope;
+    private int testRunsCount = 0;
+
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /*
+     * The test runs of the envelope are ignored. The output stream is closed together with the writer.
+     */
+    public TestsResultXmlWriter(OutputStream outputStream, TestsResult envelope) throws IOException {
+        this.outputStream = outputStream;
+        envelope.setTestRuns(new ArrayList<>());
+        try {
+            this.envelope = xmlInputFactory.createXMLEventReader(new StringReader(dtoFactory.dtoToXml(envelope)));
+            writer = xmlOutputFactory.createXMLEventWriter(outputStream, "UTF-8");
+            writer.add(xmlEventFactory.createStartDocument("UTF-8", "1.0"));
+            copyEnvelopeUntilTestRuns();
+            writer.add(xmlEventFactory.createStartElement("", "", TEST_RUNS));
+        } catch (XMLStreamException e) {
+            throw new IOException("Failed to write the tests result envelope", e);
+        }
+    }
+
+    public void write(TestRun testRun) throws IOException {
+        try {
+            XMLEventReader testRunXml = xmlInputFactory.createXMLEventReader(new StringReader(dtoFactory.dtoToXml(testRun)));
+            while (testRunXml.hasNext()) {
+                XMLEvent event = testRunXml.nextEvent();
+                if (!event.isStartDocument() && !event.isEndDocument()) {
+                    writer.add(event);
+                }
+            }
+            testRunXml.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Failed to write a test run", e);
+        }
+        testRunsCount++;
+    }
+
+    public int getTestRunsCount() {
+        return testRunsCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writer.add(xmlEventFactory.createEndElement("", "", TEST_RUNS));
+            while (envelope.hasNext()) {
+                XMLEvent event = envelope.nextEvent();
+                if (!event.isEndDocument()) {
+                    writer.add(event);
+                }
+            }
+            writer.add(xmlEventFactory.createEndDocument());
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Failed to write the tests result envelope", e);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    /*
+     * Copies the envelope up to its (empty) <test_runs> element, which is dropped, or up to the end of its root element
+     * when the SDK omitted the empty list. The rest of the envelope is copied by close().
+     */
+    private void copyEnvelopeUntilTestRuns() throws XMLStreamException {
+        int depth = 0;
+        while (envelope.hasNext()) {
+            XMLEvent event = envelope.peek();
+            if (event.isStartElement()) {
+                if (depth == 1 && TEST_RUNS.equals(event.asStartElement().getName().getLocalPart())) {
+                    skipElement();
+                    return;
+                }
+                depth++;
+            } else if (event.isEndElement()) {
+                if (depth == 1) {
+                    return;
+                }
+                depth--;
+            }
+            envelope.nextEvent();
+            if (!event.isStartDocument()) {
+                writer.add(event);
+            }
+        }
+        throw new XMLStreamException("The tests result envelope has no root element");
+    }
+
+    private void skipElement() throws XMLStreamException {
+        int depth = 0;
+        do {
+            XMLEvent event = envelope.nextEvent();
+            if (event.isStartElement()) {
+                depth++;
+            } else if (event.isEndElement()) {
+                depth--;
+            }
+        } while (depth > 0);
+    }
+}
@@ -0,0 +1,259 @@
+/*******************************************************************************
+ * Copyright 2017-2023 Open Text.
+ *
+ * The only warranties for products and services of Open Text and
+ * its affiliates and licensors (“Open Text”) are as may be set forth
+ * in the express warranty statements accompanying such products and services.
+ * Nothing herein should be construed as constituting an additional warranty.
+ * Open Text shall not be liable for technical or editorial errors or
+ * omissions contained herein. The information contained herein is subject
+ * to change without notice.
+ *
+ * Except as specifically indicated otherwise, this document contains
+ * confidential information and a valid license is required for possession,
+ * use or copying. If this work is provided to the U.S. Government,
+ * consistent with FAR 12.211 and 12.212, Commercial Computer Software,
+ * Computer Software Documentation, and Technical Data for Commercial Items are
+ * licensed to the U.S. Government under vendor's standard commercial license.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+
+package com.microfocus.octane.gitlab.testresults;
+
+import com.hp.octane.integrations.dto.tests.TestRun;
+import com.hp.octane.integrations.dto.tests.TestRunError;
+import com.microfocus.octane.gitlab.helpers.TestResultsHelper;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/*
+ * The reports are read the way JunitTestResultsProvider reads them: zipped as a job artifact, opened through ArtifactEntry
+ * (charset detection, BOM and leading garbage removal) and parsed by JunitTestResultsParser. The JUnit reports are compared
+ * with the conversion used before the StAX parser (LegacyJunitConversion). The NUnit reports used to be converted to JUnit
+ * by the XSLT of the Jenkins NUnit plugin, which is not a dependency anymore, so their expected test runs are pinned.
+ */
+public class JunitTestResultsParserTest {
+
+    private static final String FILE_PATTERN = "glob:**/*.xml";
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void junitTestsuitesMatchesLegacyConversion() throws IOException {
+        assertEquals(8, assertSameAsLegacy(fixture("junit-testsuites.xml")).size());
+    }
+
+    @Test
+    public void junitTestsuiteMatchesLegacyConversion() throws IOException {
+        assertEquals(3, assertSameAsLegacy(fixture("junit-testsuite.xml")).size());
+    }
+
+    @Test
+    public void bomPrefixedReportMatchesLegacyConversion() throws IOException {
+        assertEquals(3, assertSameAsLegacy(concat(UTF8_BOM, fixture("junit-testsuite.xml"))).size());
+    }
+
+    @Test
+    public void utf16ReportMatchesLegacyConversion() throws IOException {
+        byte[] content = ("\uFEFF" + new String(fixture("junit-testsuites.xml"), StandardCharsets.UTF_8))
+                .getBytes(StandardCharsets.UTF_16LE);
+        assertEquals(8, assertSameAsLegacy(content).size());
+    }
+
+    @Test
+    public void garbagePrefixedReportMatchesLegacyConversion() throws IOException {
+        byte[] garbage = "\r\n  *** --> \r\n".getBytes(StandardCharsets.UTF_8);
+        assertEquals(3, assertSameAsLegacy(concat(garbage, fixture("junit-testsuite.xml"))).size());
+    }
+
+    @Test
+    public void reportPrefixedWithTextIsDropped() throws IOException {
+        byte[] text = "Tests finished:\n".getBytes(StandardCharsets.UTF_8);
+        assertNull(assertSameAsLegacy(concat(text, fixture("junit-testsuite.xml"))));
+    }
+
+    @Test
+    public void malformedReportIsDropped() throws IOException {
+        assertNull(assertSameAsLegacy(fixture("malformed.xml")));
+    }
+
+    @Test
+    public void unknownReportIsIgnored() throws IOException {
+        assertEquals(Collections.emptyList(), assertSameAsLegacy(fixture("unknown-root.xml")));
+    }
+
+    @Test
+    public void nunit3Report() throws IOException {
+        assertEquals(Arrays.asList(
+                describe(null, "Example.Tests.CalculatorTests", "Adds", "PASSED", 1000, null, null, null, false),
+                describe(null, "Example.Tests.CalculatorTests", "Subtracts", "FAILED", 0,
+                        null, "  Expected: 1\n  But was:  2\n",
+                        "at Example.Tests.CalculatorTests.Subtracts() in CalculatorTests.cs:line 21\n", true),
+                describe(null, "Example.Tests.CalculatorTests", "Divides(1,0)", "FAILED", 0,
+                        "Error", "System.DivideByZeroException : Attempted to divide by zero.",
+                        "at Example.Tests.CalculatorTests.Divides(Int32 a, Int32 b)", true),
+                describe(null, "Example.Tests.CalculatorTests", "Multiplies", "SKIPPED", 0, null, null, null, false),
+                describe(null, "Example.Tests.CalculatorTests", "Rounds", "SKIPPED", 0, null, null, null, false)),
+                parseArtifact(fixture("nunit3.xml")));
+    }
+
+    @Test
+    public void nunit2Report() throws IOException {
+        assertEquals(Arrays.asList(
+                describe(null, "Example.CalculatorTests", "Adds", "PASSED", 2000, null, null, null, false),
+                describe(null, "Example.CalculatorTests", "Subtracts", "FAILED", 0,
+                        null, "  Expected: 1\n  But was:  2\n", "at Example.CalculatorTests.Subtracts()\n", true),
+                describe(null, "Example.CalculatorTests", "Divides(1.5,0)", "FAILED", 0,
+                        "Error", "System.DivideByZeroException : Attempted to divide by zero.",
+                        "at Example.CalculatorTests.Divides(Double a, Double b)", true),
+                describe(null, "Example.CalculatorTests", "Multiplies", "SKIPPED", 1, null, null, null, false)),
+                parseArtifact(fixture("nunit2.xml")));
+    }
+
+    /*
+     * A single parser is shared by all the threads parsing the files of the artifacts (see JunitTestResultsProvider).
+     */
+    @Test
+    public void parserCanBeSharedByConcurrentThreads() throws Exception {
+        List<String> fixtures = Arrays.asList("junit-testsuites.xml", "junit-testsuite.xml", "nunit2.xml", "nunit3.xml");
+        JunitTestResultsParser parser = new JunitTestResultsParser();
+        Map<String, List<String>> expected = new HashMap<>();
+        for (String fixture : fixtures) {
+            expected.put(fixture, parse(parser, fixture));
+        }
+
+        int threads = 8;
+        int iterations = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> results = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                int offset = thread;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < iterations; i++) {
+                        String fixture = fixtures.get((offset + i) % fixtures.size());
+                        assertEquals(fixture, expected.get(fixture), parse(parser, fixture));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static List<String> parse(JunitTestResultsParser parser, String fixture) throws IOException, XMLStreamException {
+        List<String> testRuns = new ArrayList<>();
+        parser.parse(new StringReader(new String(fixture(fixture), StandardCharsets.UTF_8)), fixture,
+                testRun -> testRuns.add(describe(testRun)));
+        return testRuns;
+    }
+
+    /*
+     * Returns the test runs of the report, or null when both conversions dropped it.
+     */
+    private List<String> assertSameAsLegacy(byte[] content) throws IOException {
+        List<String> testRuns = parseArtifact(content);
+        assertEquals(LegacyJunitConversion.convert(content), testRuns);
+        return testRuns;
+    }
+
+    /*
+     * Returns null when the report cannot be parsed, as JunitTestResultsProvider then drops it.
+     */
+    List<String> parseArtifact(byte[] content) throws IOException {
+        File artifactsFile = temporaryFolder.newFile();
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(artifactsFile))) {
+            zip.putNextEntry(new ZipEntry("reports/TEST-report.xml"));
+            zip.write(content);
+            zip.closeEntry();
+        }
+
+        List<List<String>> result = new ArrayList<>();
+        JunitTestResultsParser parser = new JunitTestResultsParser();
+        TestResultsHelper.forEachArtifactEntry(artifactsFile, Collections.singletonList(FILE_PATTERN), (entry, patterns) -> {
+            List<String> testRuns = new ArrayList<>();
+            try (Reader reader = entry.openReader()) {
+                parser.parse(reader, entry.getName(), testRun -> testRuns.add(describe(testRun)));
+                result.add(testRuns);
+            } catch (XMLStreamException e) {
+                result.add(null);
+            }
+        });
+        assertEquals(1, result.size());
+        return result.get(0);
+    }
+
+    static byte[] fixture(String name) throws IOException {
+        try (InputStream is = JunitTestResultsParserTest.class.getResourceAsStream("/testresults/" + name)) {
+            assertNotNull("missing fixture " + name, is);
+            return is.readAllBytes();
+        }
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    static String describe(TestRun testRun) {
+        TestRunError error = testRun.getError();
+        return describe(testRun.getPackageName(), testRun.getClassName(), testRun.getTestName(), testRun.getResult().name(),
+                testRun.getDuration(), error != null ? error.getErrorType() : null,
+                error != null ? error.getErrorMessage() : null, error != null ? error.getStackTrace() : null, error != null);
+    }
+
+    static String describe(String packageName, String className, String testName, String result, long duration,
+                           String errorType, String errorMessage, String stackTrace, boolean hasError) {
+        return "package=" + packageName + " class=" + className + " test=" + testName + " result=" + result +
+               " duration=" + duration + (hasError ? " error[type=" + errorType + " message=" + errorMessage +
+                                                     " stackTrace=" + stackTrace + "]" : "");
+    }
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright 2017-2023 Open Text.
+ *
+ * The only warranties for products and services of Open Text and
+ * its affiliates and licensors (“Open Text”) are as may be set forth
+ * in the express warranty statements accompanying such products and services.
+ * Nothing herein should be construed as constituting an additional warranty.
+ * Open Text shall not be liable for technical or editorial errors or
+ * omissions contained herein. The information contained herein is subject
+ * to change without notice.
+ *
+ * Except as specifically indicated otherwise, this document contains
+ * confidential information and a valid license is required for possession,
+ * use or copying. If this work is provided to the U.S. Government,
+ * consistent with FAR 12.211 and 12.212, Commercial Computer Software,
+ * Computer Software Documentation, and Technical Data for Commercial Items are
+ * licensed to the U.S. Government under vendor's standard commercial license.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+
+package com.microfocus.octane.gitlab.testresults;
+
+import org.mozilla.universalchardet.UniversalDetector;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * The conversion of JUnit reports used before the StAX parser, kept to compare the parser with:
+ * the entry was decoded with the detected charset, trimmed and stripped of the non-word characters before its first tag
+ * (TestResultsHelper.extractArtifacts), then bound by JAXB to the classes generated from junit5.xsd and mapped by
+ * JunitTestResultsProvider.addTestCase. The JAXB binding is rebuilt on DOM: it only read the <testsuite> children of
+ * the root <testsuites> (or the root <testsuite>) and their <testcase> children, and ignored any other element.
+ * The test runs are described by JunitTestResultsParserTest.describe.
+ */
+class LegacyJunitConversion {
+
+    /*
+     * Returns null when the report was dropped, i.e. when its conversion threw.
+     */
+    static List<String> convert(byte[] content) {
+        try {
+            String encoding = UniversalDetector.detectCharset(new ByteArrayInputStream(content));
+            String xml = new String(content, encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8);
+            xml = xml.trim().replaceFirst("^([\\W]+)<", "<");
+
+            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+            dbf.setFeature("http://xml.org/sax/features/external-general-entities", false);
+            dbf.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+            DocumentBuilder db = dbf.newDocumentBuilder();
+            Document doc = db.parse(new InputSource(new StringReader(xml)));
+            Element root = doc.getDocumentElement();
+
+            List<String> result = new ArrayList<>();
+            if ("testsuites".equals(root.getTagName())) {
+                for (Element testsuite : getChildren(root, "testsuite")) {
+                    addTestSuite(result, testsuite);
+                }
+            } else if ("testsuite".equals(root.getTagName())) {
+                addTestSuite(result, root);
+            }
+            return result;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static void addTestSuite(List<String> result, Element testsuite) {
+        for (Element testcase : getChildren(testsuite, "testcase")) {
+            addTestCase(result, getAttribute(testsuite, "package"), testcase);
+        }
+    }
+
+    private static void addTestCase(List<String> result, String packageName, Element testcase) {
+        List<Element> skippedElements = getChildren(testcase, "skipped");
+        List<Element> errors = getChildren(testcase, "error");
+        List<Element> failures = getChildren(testcase, "failure");
+        //a single valued JAXB property keeps the last occurrence
+        String skipped = skippedElements.isEmpty() ? null : skippedElements.get(skippedElements.size() - 1).getTextContent();
+
+        String testResultStatus;
+        if (skipped != null && !skipped.trim().isEmpty()) {
+            testResultStatus = "SKIPPED";
+        } else if (!failures.isEmpty() || !errors.isEmpty()) {
+            testResultStatus = "FAILED";
+        } else {
+            testResultStatus = "PASSED";
+        }
+
+        String time = getAttribute(testcase, "time");
+        long duration = time != null ? Double.valueOf(time).longValue() * 1000 : 1;
+
+        Element error = !errors.isEmpty() ? errors.get(0) : !failures.isEmpty() ? failures.get(0) : null;
+        result.add(JunitTestResultsParserTest.describe(packageName, getAttribute(testcase, "classname"),
+                getAttribute(testcase, "name"), testResultStatus, duration,
+                error != null ? getAttribute(error, "type") : null,
+                error != null ? getAttribute(error, "message") : null,
+                error != null ? error.getTextContent() : null,
+                error != null));
+    }
+
+    private static List<Element> getChildren(Element parent, String tagName) {
+        List<Element> children = new ArrayList<>();
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element && tagName.equals(((Element) child).getTagName())) {
+                children.add((Element) child);
+            }
+        }
+        return children;
+    }
+
+    private static String getAttribute(Element element, String name) {
+        return element.hasAttribute(name) ? element.getAttribute(name) : null;
+    }
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright 2017-2023 Open Text.
+ *
+ * The only warranties for products and services of Open Text and
+ * its affiliates and licensors (“Open Text”) are as may be set forth
+ * in the express warranty statements accompanying such products and services.
+ * Nothing herein should be construed as constituting an additional warranty.
+ * Open Text shall not be liable for technical or editorial errors or
+ * omissions contained herein. The information contained herein is subject
+ * to change without notice.
+ *
+ * Except as specifically indicated otherwise, this document contains
+ * confidential information and a valid license is required for possession,
+ * use or copying. If this work is provided to the U.S. Government,
+ * consistent with FAR 12.211 and 12.212, Commercial Computer Software,
+ * Computer Software Documentation, and Technical Data for Commercial Items are
+ * licensed to the U.S. Government under vendor's standard commercial license.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.microfocus.octane.gitlab.testresults;
+
+import com.hp.octane.integrations.dto.DTOFactory;
+import com.hp.octane.integrations.dto.tests.BuildContext;
+import com.hp.octane.integrations.dto.tests.TestRun;
+import com.hp.octane.integrations.dto.tests.TestRunError;
+import com.hp.octane.integrations.dto.tests.TestRunResult;
+import com.hp.octane.integrations.dto.tests.TestsResult;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * The streamed XML must read back as the same TestsResult the SDK would have serialized in one go.
+ */
+public class TestsResultXmlWriterTest {
+
+    private final DTOFactory dtoFactory = DTOFactory.getInstance();
+
+    @Test
+    public void writtenXmlMatchesSdkSerialization() throws IOException {
+        TestRunError error = dtoFactory.newDTO(TestRunError.class);
+        error.setErrorType("java.lang.AssertionError");
+        error.setErrorMessage("expected <1> & got <2>");
+        error.setStackTrace("java.lang.AssertionError: expected <1> & got <2>\n\tat com.example.ClassA.fails(ClassA.java:12)");
+        List<TestRun> testRuns = Arrays.asList(
+                testRun("ClassA", "passes", TestRunResult.PASSED),
+                testRun("ClassA", "fails", TestRunResult.FAILED).setError(error),
+                testRun("ClassB", "is skipped", TestRunResult.SKIPPED));
+
+        String written = write(testRuns);
+
+        TestsResult expected = envelope().setTestRuns(testRuns);
+        TestsResult actual = dtoFactory.dtoFromXml(written, TestsResult.class);
+        assertEquals(dtoFactory.dtoToXml(expected), dtoFactory.dtoToXml(actual));
+    }
+
+    @Test
+    public void emptyTestsResultKeepsTheEnvelope() throws IOException {
+        String written = write(Arrays.asList());
+
+        TestsResult actual = dtoFactory.dtoFromXml(written, TestsResult.class);
+        assertEquals("1234", actual.getBuildContext().getBuildId());
+        assertEquals("group/project", actual.getBuildContext().getJobName());
+        assertTrue(actual.getTestRuns() == null || actual.getTestRuns().isEmpty());
+    }
+
+    private String write(List<TestRun> testRuns) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (TestsResultXmlWriter writer = new TestsResultXmlWriter(outputStream, envelope())) {
+            for (TestRun testRun : testRuns) {
+                writer.write(testRun);
+            }
+            assertEquals(testRuns.size(), writer.getTestRunsCount());
+        }
+        return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private TestsResult envelope() {
+        BuildContext buildContext = dtoFactory.newDTO(BuildContext.class)
+                .setJobId("group/project/main")
+                .setJobName("group/project")
+                .setBuildId("1234")
+                .setBuildName("1234")
+                .setServerId("server-id");
+        return dtoFactory.newDTO(TestsResult.class).setBuildContext(buildContext);
+    }
+
+    private TestRun testRun(String className, String testName, TestRunResult result) {
+        return dtoFactory.newDTO(TestRun.class)
+                .setModuleName("")
+                .setPackageName("com.example")
+                .setClassName(className)
+                .setTestName(testName)
+                .setResult(result)
+                .setDuration(15);
+    }
+}